@@ -0,0 +1,106 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4;
+
+import java.io.File;
+import java.io.OutputStream;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Enumeration;
+import java.util.jar.JarEntry;
+import java.util.jar.JarFile;
+
+import com.kondra.kos.zero4.brandset.Brandset;
+import com.kondra.kos.zero4.brandset.RegionMenu;
+import com.kondra.kos.zero4.metrics.MetricsRegistry;
+import com.kosdev.kos.commons.core.service.region.Region;
+import com.kosdev.kos.commons.core.service.region.XmlRegionFactory;
+import com.kosdev.kos.commons.util.KosUtil;
+import com.kosdev.kos.commons.util.resource.ClassLoaderResourceLoader;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Training run used by the {@code appcds} build profile to produce an AppCDS
+ * archive of the classes the app loads while booting.
+ * <p>
+ * This is build-only code: it lives in {@code src/cds/java}, which only the
+ * profile compiles, and runs from a training jar of its own, so it never ends
+ * up in the app jar or the KAB.
+ * <p>
+ * The JVM is run with {@code -XX:ArchiveClassesAtExit} on the app jar, so
+ * every class loaded by this run is written to the archive when it exits.
+ * There is no kOS runtime during the build, so rather than booting the app
+ * this walks the same boot work that doesn't need one: parsing the brandset
+ * with Jackson, building the region menus and scraping metrics. Finally every class of the app itself
+ * is loaded so the archive also covers the code paths not exercised here.
+ * <p>
+ * On the device kOS loads the app jar with its own class loader rather than
+ * the system class loader this run uses. The app classes are therefore loaded
+ * a second time through a separate loader over the jar, which the JVM archives
+ * like classes of any custom loader. Whether kOS picks these up is only known
+ * once the archive has been verified on a device.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class CdsTraining {
+    private static final String APP_PACKAGE = "com/kondra/kos/zero4/";
+
+    /**
+     * Run the training, where the single argument is the brandset json to parse.
+     */
+    public static void main(String[] args) throws Exception {
+        long startMs = System.currentTimeMillis();
+
+        // Parse the brandset
+        byte[] json = Files.readAllBytes(new File(args[0]).toPath());
+        Brandset brandset = KosUtil.getMapper().readValue(json, Brandset.class);
+
+        // Build the menu of every region
+        XmlRegionFactory factory = new XmlRegionFactory();
+        factory.addLoader(new ClassLoaderResourceLoader(CdsTraining.class.getClassLoader()));
+        factory.load("regions.xml");
+        for (Region region : factory.getRegions()) {
+            RegionMenu.build(brandset, region.getId(), region.getUnitSystemId());
+        }
+
+        // Scrape metrics
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("zero4_cds_training", "Training counter").inc();
+        metrics.scrape(OutputStream.nullOutputStream());
+
+        // Load the rest of the app classes
+        int loaded = loadAppClasses();
+        log.info("CDS training loaded {} app classes in {}ms", loaded, System.currentTimeMillis() - startMs);
+    }
+
+    /**
+     * Load, without initializing, every class of the app in the app jar,
+     * through a loader of its own like kOS uses. Classes that fail to load,
+     * such as ones that need the kOS runtime, are skipped.
+     */
+    private static int loadAppClasses() throws Exception {
+        URL location = Zero4App.class.getProtectionDomain().getCodeSource().getLocation();
+        int loaded = 0;
+        try (JarFile jar = new JarFile(new File(location.toURI()));
+                URLClassLoader loader = new URLClassLoader(new URL[] { location }, ClassLoader.getPlatformClassLoader())) {
+            Enumeration<JarEntry> entries = jar.entries();
+            while (entries.hasMoreElements()) {
+                String name = entries.nextElement().getName();
+                if (name.startsWith(APP_PACKAGE) && name.endsWith(".class")) {
+                    try {
+                        Class.forName(name.substring(0, name.length() - 6).replace('/', '.'), false, loader);
+                        loaded++;
+                    } catch (Exception | LinkageError e) {
+                        log.debug("Skipped class not loadable outside of kOS: {}", name);
+                    }
+                }
+            }
+        }
+        return loaded;
+    }
+}
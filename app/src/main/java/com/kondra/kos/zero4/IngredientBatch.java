@@ -0,0 +1,105 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.kondra.kos.zero4.pour.Zero4PourEngine;
+import com.kosdev.kos.ext.dispense.Holder;
+import com.kosdev.kos.ext.dispense.service.insertion.InsertionService;
+
+import lombok.AllArgsConstructor;
+
+/**
+ * Batch of intrinsic ingredient assignments applied as one unit.
+ * <p>
+ * Every holder change causes kOS to rebuild the beverage graph and recompute
+ * availability, so assigning the ingredients of several pumps one at a time
+ * rebuilds the full graph once per pump, and between the assignments the
+ * beverages are available against a half assigned set of pumps. While a
+ * batch is applied, the pour engine suspends the rebuilds, and once every
+ * assignment is applied the graph and availability are recomputed once.
+ * No beverage can be poured while the batch is applied.
+ * <p>
+ * A batch can't be rolled back. Intrinsic ingredients are locked in place
+ * once inserted and kOS has no way to remove them, so assignments applied
+ * before a failure stay applied. Instead the whole batch is validated before
+ * anything is applied, and the first failure stops the batch so no later
+ * assignment is applied. The rebuild at the end still runs, so availability
+ * reflects the assignments that were applied.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class IngredientBatch {
+    private final InsertionService insertionService;
+    private final Zero4PourEngine pourEngine;
+    private final List<Assignment> assignments = new ArrayList<>();
+
+    public IngredientBatch(InsertionService insertionService, Zero4PourEngine pourEngine) {
+        this.insertionService = insertionService;
+        this.pourEngine = pourEngine;
+    }
+
+    /**
+     * Add an intrinsic assignment of the ingredient to the holder.
+     */
+    public IngredientBatch addIntrinsic(String ingredientId, Holder holder) {
+        assignments.add(new Assignment(ingredientId, holder));
+        return this;
+    }
+
+    /**
+     * Validate and apply all the assignments in order. Nothing is applied if
+     * a holder appears more than once in the batch. A holder that already has
+     * an ingredient, such as one restored by kOS, is passed to kOS as before
+     * batches, which decides whether to keep it. If an assignment fails, the
+     * remaining ones are not applied and the failure is thrown.
+     */
+    public void commit() {
+        Set<Holder> holders = new HashSet<>();
+        for (Assignment a : assignments) {
+            if (!holders.add(a.holder)) {
+                throw new IllegalArgumentException("holder assigned twice: " + a.holder.getName());
+            }
+        }
+
+        pourEngine.suspendRebuilds();
+        try {
+            for (Assignment a : assignments) {
+                apply(a);
+            }
+        } finally {
+            pourEngine.resumeRebuilds();
+        }
+    }
+
+    /**
+     * Apply the assignments one at a time without validating or suspending
+     * rebuilds, which rebuilds the full graph for every assignment. This
+     * is how assignments were applied before batches, and is kept so the
+     * two can be compared.
+     */
+    public void applySequential() {
+        for (Assignment a : assignments) {
+            apply(a);
+        }
+    }
+
+    private void apply(Assignment a) {
+        insertionService.insertIntrinsic(a.ingredientId, a.holder);
+    }
+
+    /**
+     * Ingredient to assign to a holder.
+     */
+    @AllArgsConstructor
+    private static class Assignment {
+        private final String ingredientId;
+        private final Holder holder;
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4;
+
+import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiController;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint;
+
+/**
+ * Controller that serves the cost of assigning the ingredients of the pumps.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@ApiController(base = "/ingredients",
+        title = "Ingredient service",
+        desc = "Statistics of the ingredients assigned to the pumps.")
+public class IngredientController {
+    @Autowired
+    private Zero4App app;
+
+    @ApiEndpoint(GET = "/insertStats",
+            desc = "Return the time and graph rebuilds spent inserting the startup ingredients.")
+    public InsertStats getInsertStats() {
+        return app.getAssembly().getInsertStats();
+    }
+}
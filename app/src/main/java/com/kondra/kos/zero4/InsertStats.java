@@ -0,0 +1,27 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Cost of inserting the startup ingredients, used to compare inserting
+ * them as a batch with inserting them one at a time. The graph counts
+ * are taken from the start of the insertion until the stats are read, so
+ * rebuilds kOS runs after the insertion returns are included. Full
+ * rebuilds are {@code graphRebuilds - graphRebuildsSuspended}.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter
+@AllArgsConstructor
+public class InsertStats {
+    private boolean batch;               // true if inserted as a batch
+    private long durationMs;             // time to insert the ingredients
+    private long graphRebuilds;          // beverage graph rebuilds
+    private long graphRebuildsSuspended; // rebuilds suspended by the batch
+    private long graphBeverages;         // beverage nodes added by the rebuilds
+}
@@ -3,6 +3,10 @@
  */
 package com.kondra.kos.zero4;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.kosdev.kos.commons.core.context.annotations.Autowired;
 import com.kosdev.kos.commons.core.dispatcher.annotations.ApiController;
 import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint;
@@ -24,27 +28,56 @@ import com.kosdev.kos.ext.dispense.PumpTrouble;
 public class TestController {
     @Autowired
     private TroubleService troubleService;
+    @Autowired
+    private Zero4App app;
+    private final AtomicInteger blockIds = new AtomicInteger();            // ids of block troubles
+    private final Map<Integer, BlockTrouble> blocks = new ConcurrentHashMap<>(); // active blocks by id
 
     @ApiEndpoint(GET = "/blockPump/{pump}",
             desc = "Block pouring on the specified pump by creating a block trouble.",
             params = @Param(name = "pump", desc = "Path of the pump to block."))
     public void blockPump(@HandleVariable("pump") Pump<?> pump) {
-        troubleService.add(new BlockTrouble(pump));
+        block(pump);
     }
 
     @ApiEndpoint(GET = "/unblockPump/{pump}",
             desc = "Unblock pouring on the specified pump by removing the block trouble.",
             params = @Param(name = "pump", desc = "Path of the pump to unblock."))
     public void unblockPump(@HandleVariable("pump") Pump<?> pump) {
+        blocks.values().removeIf(b -> b.isImpacted(pump));
         troubleService.removeTroubles(t -> (t instanceof BlockTrouble) && t.isImpacted(pump));
     }
 
+    /**
+     * Block the pump and return the id of the block, so that overlapping
+     * blocks of the same pump can be removed independently.
+     */
+    public int block(Pump<?> pump) {
+        BlockTrouble trouble = new BlockTrouble(pump, blockIds.incrementAndGet());
+        blocks.put(trouble.id, trouble);
+        troubleService.add(trouble);
+        return trouble.id;
+    }
+
+    /**
+     * Remove the block with the specified id.
+     */
+    public void unblock(int id) {
+        BlockTrouble trouble = blocks.remove(id);
+        if (trouble != null) {
+            troubleService.removeTroubles(t -> t == trouble);
+        }
+    }
+
     /**
      * Trouble class for a pump that blocks beveage pouring
      */
-    private class BlockTrouble extends PumpTrouble {
-        public BlockTrouble(Pump<?> pump) {
+    public static class BlockTrouble extends PumpTrouble {
+        private final int id;         // id of the block
+
+        public BlockTrouble(Pump<?> pump, int id) {
             super(pump);
+            this.id = id;
             blockBeveragePour();
         }
     }
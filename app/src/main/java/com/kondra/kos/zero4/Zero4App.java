@@ -3,8 +3,33 @@
  */
 package com.kondra.kos.zero4;
 
+import java.io.File;
+import java.io.InputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.kondra.kos.zero4.brandset.AssetController;
+import com.kondra.kos.zero4.brandset.AssetManifest;
+import com.kondra.kos.zero4.brandset.AssetServer;
 import com.kondra.kos.zero4.brandset.Brandset;
+import com.kondra.kos.zero4.brandset.MenuController;
+import com.kondra.kos.zero4.brandset.RegionMenu;
+import com.kondra.kos.zero4.hardware.BoardController;
+import com.kondra.kos.zero4.hardware.pumps.DutyController;
+import com.kondra.kos.zero4.jfr.BrandsetLoadEvent;
+import com.kondra.kos.zero4.loadtest.LoadTestController;
+import com.kondra.kos.zero4.loadtest.TrafficCapture;
+import com.kondra.kos.zero4.metrics.MetricsRegistry;
+import com.kondra.kos.zero4.metrics.MetricsServer;
+import com.kondra.kos.zero4.pour.PourController;
+import com.kondra.kos.zero4.trace.TraceController;
 import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.service.region.Region;
+import com.kosdev.kos.commons.core.service.region.RegionService;
 import com.kosdev.kos.commons.core.service.region.XmlRegionFactory;
 import com.kosdev.kos.commons.core.vfs.VFSSource;
 import com.kosdev.kos.commons.kab.KabFile;
@@ -37,14 +62,38 @@ import lombok.extern.slf4j.Slf4j;
 public class Zero4App extends SystemApplication<BaseAppConfig> {
     // The KAB type for the user interface kab
     private static final String UI_KAB_TYPE = "zero4.ui";
+    // Where app state such as pump counters is kept between boots
+    public static final File DATA_DIR = new File(System.getProperty("zero4.dataDir",
+            System.getProperty("user.home") + "/.zero4"));
+    // Where app metrics are served for scraping, a negative port disables the server
+    private static final String METRICS_ADDR = System.getProperty("zero4.metricsAddr", "127.0.0.1");
+    private static final int METRICS_PORT = Integer.getInteger("zero4.metricsPort", 9464);
+    // Where brandset icons are served with precompressed variants, a negative port disables the server
+    private static final String ASSET_ADDR = System.getProperty("zero4.assetAddr", "127.0.0.1");
+    private static final int ASSET_PORT = Integer.getInteger("zero4.assetPort", 9465);
 
     @Autowired
     private IngredientService ingredientService;   // used to register ingredients from the brandset
     @Autowired
     private BrowserService browserService;         // used to navigate the browser to our ui
+    @Autowired
+    private RegionService regionService;           // used to find the active region
     @Getter
-    private Brandset brandset;                     // our brandset loaded from another KAB
+    private volatile Brandset brandset;            // our brandset loaded from another KAB
     private VFSSource uiVfsSource;                 // where the ui KAB is mounted in vfs
+    @Getter
+    private Zero4Assembly assembly;                // the installed dispenser assembly
+    @Getter
+    private AssetManifest assetManifest;           // content hashes of the brandset assets
+    private final Map<String, String> regionUnits = new HashMap<>();      // unit system of each region
+    private volatile Map<String, RegionMenu> menus = Collections.emptyMap(); // menu of each region
+    @Getter
+    private final MetricsRegistry metrics = new MetricsRegistry(); // app metrics for scraping
+    @Getter
+    private final TrafficCapture trafficCapture = new TrafficCapture(); // pour traffic recorder for replay
+    private volatile long startupMs;               // time from jvm start until started()
+    private MetricsServer metricsServer;           // serves metrics for scraping
+    private volatile AssetServer assetServer;      // serves precompressed brandset icons
 
     /**
      * Called when the application loads. Any beans that the application wants to create
@@ -57,6 +106,31 @@ public class Zero4App extends SystemApplication<BaseAppConfig> {
         // add test controller so we can enable / disable pumps
         addToCtx(new TestController());
 
+        // add load test controller so pours can be driven headless for benchmarking
+        addToCtx(new LoadTestController());
+
+        // add asset controller so the ui can validate cached brandset icons
+        addToCtx(new AssetController());
+
+        // add menu controller so the ui can get the menu of the active region
+        addToCtx(new MenuController());
+
+        // add pour controller so the ui can arm pours when a beverage is selected
+        addToCtx(new PourController());
+
+        // add board, duty and trace controllers so board health can be inspected
+        addToCtx(new BoardController());
+        addToCtx(new DutyController());
+        addToCtx(new TraceController());
+
+        // add ingredient controller so the cost of assigning ingredients can be compared
+        addToCtx(new IngredientController());
+
+        // register app metrics, which are served once the app has started
+        metrics.gauge("zero4_brandset_beverages", "Beverages in the brandset", null,
+                () -> (brandset != null) ? brandset.getBeverages().size() : 0);
+        metrics.gauge("zero4_startup_ms", "Time from jvm start until the app started", null, () -> startupMs);
+
         // Many devices have settings or functions that depend on the geographic region
         // device is located in, such as default units, time/date formats, rfid frequencies,
         // regulatory information and so on. kOS provides {@code RegionService} to centrally
@@ -69,6 +143,11 @@ public class Zero4App extends SystemApplication<BaseAppConfig> {
         // Install the region data into {@code RegionService}. At this point the region can be
         // changed using {@code RegionService} api's or even standard config api's.
         installRegions(factory.getRegions());
+
+        // Remember the unit system of each region so a menu can be built for each of them
+        for (Region region : factory.getRegions()) {
+            regionUnits.put(region.getId(), region.getUnitSystemId());
+        }
     }
 
     /**
@@ -87,7 +166,8 @@ public class Zero4App extends SystemApplication<BaseAppConfig> {
         KabFile kab = getSection().getKabByType("zero4.brandset");
         if (kab != null) {
             // Load the brandset json from the KAB into a brandset object
-            brandset = KosUtil.getMapper().readValue(kab.getInputStream("brandset.json"), Brandset.class);
+            loadBrandset(kab);
+            buildMenus();
 
             // The brandset includes a collection of possible ingredients which we want to
             // make available to various kOS services. This is done by adding the brandset
@@ -101,6 +181,29 @@ public class Zero4App extends SystemApplication<BaseAppConfig> {
 
             // Log that we mounted the KAB and where it's located in VFS
             log.info("Brandset mounted at: {}", source.getBasePath());
+
+            // The brandset build generates a manifest of content hashes for the optimized
+            // assets, which are served with their precompressed variants and strong etags
+            // once the app has started. Older brandsets don't have one, in which case the
+            // ui simply fetches the icons from vfs as before.
+            try (InputStream in = kab.getInputStream("manifest.json")) {
+                if (in != null) {
+                    assetManifest = KosUtil.getMapper().readValue(in, AssetManifest.class);
+                } else {
+                    log.info("Brandset has no asset manifest");
+                }
+            } catch (Exception e) {
+                log.warn("Failed to load brandset asset manifest", e);
+            }
+            if ((assetManifest != null) && (ASSET_PORT >= 0)) {
+                try {
+                    AssetServer server = new AssetServer(new InetSocketAddress(ASSET_ADDR, ASSET_PORT));
+                    server.load(kab, assetManifest);
+                    assetServer = server;
+                } catch (Exception e) {
+                    log.warn("Failed to load brandset assets, icons are only served from vfs", e);
+                }
+            }
         }
 
         // If there is a user interface KAB in our section, mount it into the vfs so that
@@ -114,7 +217,62 @@ public class Zero4App extends SystemApplication<BaseAppConfig> {
         // logical version of hardware to be created and configured before real hardware can
         // connect to it, preventing race conditions. We create the {@code Assembly} and install
         // it, making it available in kOS.
-        installAssembly(new Zero4Assembly());
+        assembly = new Zero4Assembly();
+        installAssembly(assembly);
+    }
+
+    /**
+     * Load the brandset from the KAB.
+     */
+    private void loadBrandset(KabFile kab) throws Exception {
+        BrandsetLoadEvent event = new BrandsetLoadEvent();
+        event.begin();
+
+        try (InputStream in = kab.getInputStream("brandset.json")) {
+            brandset = KosUtil.getMapper().readValue(in, Brandset.class);
+        }
+
+        if (event.shouldCommit()) {
+            event.beverages = brandset.getBeverages().size();
+            event.ingredients = brandset.getIngredients().size();
+            event.commit();
+        }
+    }
+
+    /**
+     * Build the menu of the brandset for every installed region.
+     */
+    private void buildMenus() {
+        Map<String, RegionMenu> built = new HashMap<>();
+        for (Map.Entry<String, String> region : regionUnits.entrySet()) {
+            built.put(region.getKey(), RegionMenu.build(brandset, region.getKey(), region.getValue()));
+        }
+        menus = built;
+    }
+
+    /**
+     * Return the url the brandset assets are served relative to, or null if
+     * they aren't served.
+     */
+    public String getAssetBaseUrl() {
+        AssetServer server = assetServer;
+        return (server != null) ? server.getBaseUrl() : null;
+    }
+
+    /**
+     * Return the menu of the specified region, or null if the region isn't installed.
+     */
+    public RegionMenu getMenu(String regionId) {
+        return menus.get(regionId);
+    }
+
+    /**
+     * Return the menu of the active region, or null if no region is active or
+     * the active region isn't installed.
+     */
+    public RegionMenu getActiveMenu() {
+        Region region = regionService.getRegion();
+        return (region != null) ? menus.get(region.getId()) : null;
     }
 
     /**
@@ -126,9 +284,56 @@ public class Zero4App extends SystemApplication<BaseAppConfig> {
      */
     @Override
     public void started() throws Exception {
+        // Record the time from jvm start until now, and whether a CDS archive was used,
+        // so cold start can be compared with and without the AppCDS archive
+        RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+        startupMs = System.currentTimeMillis() - runtime.getStartTime();
+        boolean cds = runtime.getInputArguments().stream().anyMatch(a -> a.startsWith("-XX:SharedArchiveFile"));
+        log.info("Started {}ms after jvm start, appcds archive: {}", startupMs, cds);
+
+        // Serve metrics so they can be scraped
+        if (METRICS_PORT >= 0) {
+            metricsServer = new MetricsServer(metrics, new InetSocketAddress(METRICS_ADDR, METRICS_PORT));
+            try {
+                metricsServer.start();
+            } catch (Exception e) {
+                log.error("Failed to start metrics server on port {}", METRICS_PORT, e);
+                metricsServer = null;
+            }
+        }
+
+        // Serve the precompressed brandset icons
+        if (assetServer != null) {
+            try {
+                assetServer.start();
+            } catch (Exception e) {
+                log.error("Failed to start asset server on port {}", ASSET_PORT, e);
+                assetServer = null;
+            }
+        }
+
         // nav to the ui
         if (uiVfsSource != null) {
             browserService.goToUrl(uiVfsSource.getFullPath("index.html"));
         }
     }
+
+    /**
+     * Called when the application is stopped.
+     */
+    @Override
+    public void stop() {
+        if (metricsServer != null) {
+            metricsServer.stop();
+        }
+        if (assetServer != null) {
+            assetServer.stop();
+        }
+        if ((assembly != null) && (assembly.getDutyMonitor() != null)) {
+            assembly.getDutyMonitor().stop();
+        }
+        if ((assembly != null) && (assembly.getMaintenance() != null)) {
+            assembly.getMaintenance().stop();
+        }
+    }
 }
@@ -3,18 +3,31 @@
  */
 package com.kondra.kos.zero4;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+
 import com.kondra.kos.zero4.brandset.Ingredient;
 import com.kondra.kos.zero4.hardware.Zero4Adapter;
 import com.kondra.kos.zero4.hardware.Zero4Board;
+import com.kondra.kos.zero4.hardware.pumps.BasePump;
+import com.kondra.kos.zero4.hardware.pumps.PumpDutyMonitor;
+import com.kondra.kos.zero4.loadtest.BlockCapture;
+import com.kondra.kos.zero4.maintenance.IntentDurations;
+import com.kondra.kos.zero4.maintenance.MaintenanceScheduler;
+import com.kondra.kos.zero4.maintenance.MaintenanceTask;
 import com.kondra.kos.zero4.pour.Zero4PourDelegate;
 import com.kondra.kos.zero4.pour.Zero4PourEngine;
+import com.kondra.kos.zero4.trace.TroubleTracer;
 import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.service.trouble.TroubleService;
 import com.kosdev.kos.commons.util.resource.ClassLoaderResourceLoader;
 import com.kosdev.kos.core.app.KosCore;
 import com.kosdev.kos.core.service.assembly.CoreAssembly;
 import com.kosdev.kos.core.service.spawn.SpawnService;
 import com.kosdev.kos.ext.dispense.DispenseAssembly;
 import com.kosdev.kos.ext.dispense.HolderBuilder;
+import com.kosdev.kos.ext.dispense.Pump;
 import com.kosdev.kos.ext.dispense.pipeline.beverage.BeverageNozzlePipeline;
 import com.kosdev.kos.ext.dispense.pipeline.ingredient.IngredientNozzlePipeline;
 import com.kosdev.kos.ext.dispense.pipeline.ingredient.XmlPumpIntentFactory;
@@ -22,6 +35,7 @@ import com.kosdev.kos.ext.dispense.service.insertion.InsertionService;
 import com.kosdev.kos.ext.dispense.service.nozzle.Nozzle;
 
 import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
 
 /**
  * Assembly class for the Zero4 demo kit dispenser.
@@ -46,14 +60,33 @@ import lombok.Getter;
  * @author David Vogt
  * @version 2025-03-13
  */
+@Slf4j
 public class Zero4Assembly extends DispenseAssembly implements CoreAssembly {
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+
     @Autowired
     private InsertionService insertionService;    // used to insert ingredients
     @Autowired
     private SpawnService spawnService;            // used to start the Zero4 adapter
+    @Autowired
+    private Zero4App app;                         // used to register metrics
+    @Autowired
+    private TroubleService troubleService;        // used to raise pump wear troubles and trace troubles
     @Getter
     private BeverageNozzlePipeline beveragePipeline;
+    @Getter
+    private Zero4PourEngine pourEngine;
+    @Getter
     private Zero4Board zero4;
+    @Getter
+    private MaintenanceScheduler maintenance;
+    @Getter
+    private PumpDutyMonitor dutyMonitor;
+    private boolean insertBatch;                  // true if startup ingredients were inserted as a batch
+    private long insertMs;                        // time to insert the startup ingredients
+    private long insertRebuildsStart;             // graph rebuilds when the insertion started
+    private long insertSuspendedStart;            // suspended graph rebuilds when the insertion started
+    private long insertBeveragesStart;            // beverage nodes added when the insertion started
 
     public Zero4Assembly() throws Exception {
         super("core");
@@ -73,7 +106,7 @@ public class Zero4Assembly extends DispenseAssembly implements CoreAssembly {
         addBoard(zero4);
 
         // Create a nozzle for the dispenser and add to the assembly
-        Nozzle nozzle = new Nozzle(this, "nozzle");
+        Nozzle nozzle = new Nozzle(this, Zero4PourEngine.NOZZLE);
         addNozzle(nozzle);
 
         // kOS models how ingredients, pump and nozzles are connected, introducing
@@ -105,14 +138,26 @@ public class Zero4Assembly extends DispenseAssembly implements CoreAssembly {
         ingredientPipeline.setDilutionPump(zero4.getWater());
         nozzle.add(ingredientPipeline);
 
+        // Prime, purge and flush intents take pumps out of service, so rather than waiting
+        // for someone to trigger them, the maintenance scheduler runs them on the ingredient
+        // pipeline when the beverage pour traffic it learns predicts an idle window. How
+        // long each intent occupies the pump comes from the same intents.xml.
+        IntentDurations durations = IntentDurations.load(getClass().getClassLoader(), "intents.xml");
+        maintenance = new MaintenanceScheduler(ingredientPipeline, new File(Zero4App.DATA_DIR, "maintenance.bin"));
+        for (Pump<?> micro : zero4.getMicros()) {
+            addMaintenance((BasePump)micro, "PRIME", 8 * HOUR_MS, durations);
+            addMaintenance((BasePump)micro, "FLUSH", 24 * HOUR_MS, durations);
+            addMaintenance((BasePump)micro, "PURGE", 7 * 24 * HOUR_MS, durations);
+        }
+
         // kOS treats ingredient and beverage pouring as fundamentally different, allowing
         // troubles to block these methods of pouring independently. The {@code BeverageNozzlePipeline}
         // provides built-in support for encoding recipe data into a beverage graph which automatically
         // computes availability of beverages as well as being able to compute which pumps to enable
         // to pour any particular beverage. By implementing a custom {@code BeveragePourEngine},
         // developers can model virtually any type of beverage pouring.
-        Zero4PourEngine engine = new Zero4PourEngine();
-        beveragePipeline = new BeverageNozzlePipeline(engine);
+        pourEngine = new Zero4PourEngine();
+        beveragePipeline = new BeverageNozzlePipeline(pourEngine);
 
         // The beverage pour engine doesn't know about fixed volumes so we need to provide a delegate
         // that returns the max beverage pour volume. This can also be used to return named volumes
@@ -122,6 +167,13 @@ public class Zero4Assembly extends DispenseAssembly implements CoreAssembly {
         nozzle.add(beveragePipeline);
     }
 
+    /**
+     * Add a maintenance task that runs the intent on the pump at the interval.
+     */
+    private void addMaintenance(BasePump pump, String intentType, long intervalMs, IntentDurations durations) {
+        maintenance.add(new MaintenanceTask(pump, intentType, intervalMs, durations.getDurationMs(pump.getType(), intentType)));
+    }
+
     /**
      * Start lifecycle callback, called after {@code load()} returns and all components added to
      * the assembly during {@code load()} have been fully initialized.
@@ -144,18 +196,74 @@ public class Zero4Assembly extends DispenseAssembly implements CoreAssembly {
             spawnService.addProcess(new Zero4Adapter());
         }
 
+        // Start running maintenance intents in idle windows
+        maintenance.start();
+
+        // Persist pump usage counters and raise a trouble when a pump is worn
+        List<BasePump> pumps = new ArrayList<>();
+        zero4.getMicros().forEach(p -> pumps.add((BasePump)p));
+        pumps.add(zero4.getWater());
+        pumps.add(zero4.getCarb());
+        dutyMonitor = new PumpDutyMonitor(pumps, troubleService, new File(Zero4App.DATA_DIR, "pumpDuty.bin"));
+        dutyMonitor.start();
+
+        // Dump the pump event trace whenever a trouble is raised
+        troubleService.addListener(new TroubleTracer(zero4));
+
+        // Record pump blocks in the traffic capture so replays block the same pumps
+        troubleService.addListener(new BlockCapture(app.getTrafficCapture(), pumps));
+
+        // Make board and maintenance metrics available for scraping
+        zero4.registerMetrics(app.getMetrics());
+        maintenance.registerMetrics(app.getMetrics());
+
         // Water and carb are always connected so we can insert them as intrinsic ingredients.
         // Intrinsics are locked in place and cannot be replaced once installed.
-        insertionService.insertIntrinsic(Ingredient.WATER, zero4.getWater().getHolder());
-        insertionService.insertIntrinsic(Ingredient.CARB, zero4.getCarb().getHolder());
+        IngredientBatch batch = new IngredientBatch(insertionService, pourEngine);
+        batch.addIntrinsic(Ingredient.WATER, zero4.getWater().getHolder());
+        batch.addIntrinsic(Ingredient.CARB, zero4.getCarb().getHolder());
 
         // Insert the other ingredients via code just because it's a demo and it's convenient.
         // If these lines are commented out, the user must insert ingredients via api to make
         // them available for pouring. This can be done using the ingredient assignment tool
         // in kOS Studio or by using the corresponding endpoints using a tool such as postman.
-        insertionService.insertIntrinsic(Ingredient.LEMON, zero4.getMicros().get(0).getHolder());
-        insertionService.insertIntrinsic(Ingredient.LIME, zero4.getMicros().get(1).getHolder());
-        insertionService.insertIntrinsic(Ingredient.CHERRY, zero4.getMicros().get(2).getHolder());
-        insertionService.insertIntrinsic(Ingredient.TROPICAL, zero4.getMicros().get(3).getHolder());
+        batch.addIntrinsic(Ingredient.LEMON, zero4.getMicros().get(0).getHolder());
+        batch.addIntrinsic(Ingredient.LIME, zero4.getMicros().get(1).getHolder());
+        batch.addIntrinsic(Ingredient.CHERRY, zero4.getMicros().get(2).getHolder());
+        batch.addIntrinsic(Ingredient.TROPICAL, zero4.getMicros().get(3).getHolder());
+
+        // Apply the assignments as one batch so the graph and availability are recomputed once
+        // and no beverage is added against a partially assigned set of pumps. Setting
+        // zero4.batchInsert=false inserts them one at a time instead, so the cost of both can
+        // be compared using /ingredients/insertStats.
+        insertBatch = Boolean.parseBoolean(System.getProperty("zero4.batchInsert", "true"));
+        insertRebuildsStart = pourEngine.getGraphRebuilds().get();
+        insertSuspendedStart = pourEngine.getGraphRebuildsSuspended().get();
+        insertBeveragesStart = pourEngine.getGraphBeverages().get();
+        long startNs = System.nanoTime();
+        try {
+            if (insertBatch) {
+                batch.commit();
+            } else {
+                batch.applySequential();
+            }
+        } finally {
+            insertMs = (System.nanoTime() - startNs) / 1_000_000;
+            InsertStats stats = getInsertStats();
+            log.info("Inserted ingredients, batch: {}, {}ms, graph rebuilds: {} ({} suspended), beverage nodes: {}",
+                    insertBatch, insertMs, stats.getGraphRebuilds(), stats.getGraphRebuildsSuspended(),
+                    stats.getGraphBeverages());
+        }
+    }
+
+    /**
+     * Return the cost of inserting the startup ingredients, counting graph
+     * rebuilds from the start of the insertion until now.
+     */
+    public InsertStats getInsertStats() {
+        return new InsertStats(insertBatch, insertMs,
+                pourEngine.getGraphRebuilds().get() - insertRebuildsStart,
+                pourEngine.getGraphRebuildsSuspended().get() - insertSuspendedStart,
+                pourEngine.getGraphBeverages().get() - insertBeveragesStart);
     }
 }
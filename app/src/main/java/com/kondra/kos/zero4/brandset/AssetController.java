@@ -0,0 +1,37 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.brandset;
+
+import com.kondra.kos.zero4.Zero4App;
+import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiController;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint;
+
+/**
+ * Controller that exposes the brandset asset manifest and where the
+ * {@code AssetServer} serves the precompressed icons, so the UI can load
+ * icons from there and revalidate cached ones with their etags.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@ApiController(base = "/assets",
+        title = "Brandset asset service",
+        desc = "Content hashes and location of the optimized brandset assets.")
+public class AssetController {
+    @Autowired
+    private Zero4App app;
+
+    @ApiEndpoint(GET = "/manifest",
+            desc = "Return the content hash, size and precompressed sizes of every brandset asset.")
+    public AssetManifest getManifest() {
+        return app.getAssetManifest();
+    }
+
+    @ApiEndpoint(GET = "/baseUrl",
+            desc = "Return the url the assets in the manifest are served relative to, or null if they aren't served.")
+    public String getBaseUrl() {
+        return app.getAssetBaseUrl();
+    }
+}
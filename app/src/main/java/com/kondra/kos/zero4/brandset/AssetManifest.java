@@ -0,0 +1,51 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.brandset;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonAnySetter;
+import com.fasterxml.jackson.annotation.JsonValue;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Content hash manifest of the optimized brandset assets.
+ * <p>
+ * The brandset build minifies icons, writes precompressed gzip and, when
+ * available, brotli copies of each one and records a content hash of every
+ * asset in {@code manifest.json}. Since the hash only changes when the content
+ * does, it makes a strong etag, which allows the UI to keep icons cached across
+ * reboots and only fetch the ones that actually changed when a new brandset is
+ * installed.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class AssetManifest {
+    private final Map<String, Entry> entries = new HashMap<>();
+
+    @JsonAnySetter
+    public void add(String path, Entry entry) {
+        entries.put(path, entry);
+    }
+
+    @JsonValue
+    public Map<String, Entry> getEntries() {
+        return entries;
+    }
+
+    /**
+     * Manifest data for a single asset.
+     */
+    @Getter @Setter
+    public static class Entry {
+        private String hash;   // content hash of the minified asset
+        private int size;      // size of the minified asset
+        private int gzSize;    // size of the precompressed .gz variant
+        private int brSize;    // size of the precompressed .br variant, 0 if there is none
+    }
+}
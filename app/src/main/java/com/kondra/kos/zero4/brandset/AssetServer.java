@@ -0,0 +1,228 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.brandset;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.HashMap;
+import java.util.Map;
+
+import com.kosdev.kos.commons.kab.KabFile;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves the optimized brandset icons with precompressed variants and strong
+ * etags.
+ * <p>
+ * The kOS web server serves files mounted in VFS as they are, without content
+ * negotiation or etags, so the UI refetches every icon uncompressed on each
+ * load. This serves {@code GET /brandset/<path>} from the http server built
+ * into the jdk instead, for every asset in the manifest. The bytes of each
+ * asset and its precompressed variants are read from the brandset KAB once
+ * when the server starts. A request gets the brotli or gzip variant if its
+ * {@code Accept-Encoding} allows it, and each variant has its own strong etag
+ * derived from the content hash, so a UI revalidating a cached icon with
+ * {@code If-None-Match} gets a bodyless 304 unless the icon changed. The
+ * server listens on loopback by default, where the browser of the device runs.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class AssetServer {
+    public static final String PREFIX = "/brandset/";
+
+    private final InetSocketAddress address;
+    private final Map<String, Asset> assets = new HashMap<>(); // assets by path relative to the brandset root
+    private HttpServer server;
+
+    public AssetServer(InetSocketAddress address) {
+        this.address = address;
+    }
+
+    /**
+     * Read every asset in the manifest and its precompressed variants from the KAB.
+     */
+    public void load(KabFile kab, AssetManifest manifest) throws IOException {
+        for (Map.Entry<String, AssetManifest.Entry> e : manifest.getEntries().entrySet()) {
+            String path = e.getKey();
+            AssetManifest.Entry entry = e.getValue();
+            byte[] data = read(kab, path);
+            if (data == null) {
+                log.warn("Brandset asset in the manifest is missing from the KAB: {}", path);
+                continue;
+            }
+            byte[] gz = (entry.getGzSize() > 0) ? read(kab, path + ".gz") : null;
+            byte[] br = (entry.getBrSize() > 0) ? read(kab, path + ".br") : null;
+            add(path, entry.getHash(), data, gz, br);
+        }
+    }
+
+    /**
+     * Add an asset with its content hash and optional precompressed variants.
+     */
+    public synchronized void add(String path, String hash, byte[] data, byte[] gz, byte[] br) {
+        assets.put(path, new Asset(contentType(path), hash, data, gz, br));
+    }
+
+    /**
+     * Start serving assets.
+     */
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext(PREFIX, this::handle);
+        server.start();
+        log.info("Brandset assets served at: {}", getBaseUrl());
+    }
+
+    /**
+     * Stop serving assets.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    /**
+     * Return the url that asset paths are relative to, or null if the server
+     * isn't running.
+     */
+    public synchronized String getBaseUrl() {
+        return (server == null) ? null
+                : "http://" + address.getHostString() + ":" + server.getAddress().getPort() + PREFIX;
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            String method = exchange.getRequestMethod();
+            if (!"GET".equals(method) && !"HEAD".equals(method)) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            Asset asset;
+            synchronized (this) {
+                asset = assets.get(exchange.getRequestURI().getPath().substring(PREFIX.length()));
+            }
+            if (asset == null) {
+                exchange.sendResponseHeaders(404, -1);
+                return;
+            }
+
+            // Pick the smallest variant the client accepts
+            String accept = exchange.getRequestHeaders().getFirst("Accept-Encoding");
+            byte[] body = asset.data;
+            String encoding = null;
+            if ((asset.br != null) && accepts(accept, "br")) {
+                body = asset.br;
+                encoding = "br";
+            } else if ((asset.gz != null) && accepts(accept, "gzip")) {
+                body = asset.gz;
+                encoding = "gzip";
+            }
+            String etag = "\"" + asset.hash + ((encoding != null) ? "-" + encoding : "") + "\"";
+
+            exchange.getResponseHeaders().set("Content-Type", asset.contentType);
+            exchange.getResponseHeaders().set("ETag", etag);
+            exchange.getResponseHeaders().set("Cache-Control", "no-cache");
+            exchange.getResponseHeaders().set("Vary", "Accept-Encoding");
+            if (matches(exchange.getRequestHeaders().getFirst("If-None-Match"), etag)) {
+                exchange.sendResponseHeaders(304, -1);
+                return;
+            }
+            if (encoding != null) {
+                exchange.getResponseHeaders().set("Content-Encoding", encoding);
+            }
+            if ("HEAD".equals(method)) {
+                exchange.getResponseHeaders().set("Content-Length", String.valueOf(body.length));
+                exchange.sendResponseHeaders(200, -1);
+                return;
+            }
+            exchange.sendResponseHeaders(200, body.length);
+            try (OutputStream out = exchange.getResponseBody()) {
+                out.write(body);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+
+    /**
+     * Return true if the Accept-Encoding header allows the coding, which it
+     * doesn't if the coding is missing or has a quality of zero.
+     */
+    static boolean accepts(String header, String coding) {
+        if (header == null) {
+            return false;
+        }
+        for (String part : header.split(",")) {
+            String[] params = part.trim().split(";");
+            if (params[0].trim().equalsIgnoreCase(coding)) {
+                for (int i = 1; i < params.length; i++) {
+                    String param = params[i].trim();
+                    if (param.startsWith("q=") && (Double.parseDouble(param.substring(2)) == 0)) {
+                        return false;
+                    }
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Return true if the If-None-Match header matches the etag. Weak
+     * comparison is used, as required for If-None-Match.
+     */
+    static boolean matches(String header, String etag) {
+        if (header == null) {
+            return false;
+        }
+        for (String tag : header.split(",")) {
+            tag = tag.trim();
+            if (tag.equals("*") || tag.equals(etag) || tag.equals("W/" + etag)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static String contentType(String path) {
+        if (path.endsWith(".svg")) {
+            return "image/svg+xml";
+        }
+        return path.endsWith(".json") ? "application/json" : "application/octet-stream";
+    }
+
+    private static byte[] read(KabFile kab, String path) throws IOException {
+        try (InputStream in = kab.getInputStream(path)) {
+            return (in != null) ? in.readAllBytes() : null;
+        }
+    }
+
+    /**
+     * Bytes of an asset and its precompressed variants.
+     */
+    private static class Asset {
+        private final String contentType;
+        private final String hash;     // content hash of the uncompressed bytes
+        private final byte[] data;     // uncompressed bytes
+        private final byte[] gz;       // gzip variant, null if there is none
+        private final byte[] br;       // brotli variant, null if there is none
+
+        Asset(String contentType, String hash, byte[] data, byte[] gz, byte[] br) {
+            this.contentType = contentType;
+            this.hash = hash;
+            this.data = data;
+            this.gz = gz;
+            this.br = br;
+        }
+    }
+}
@@ -23,4 +23,12 @@ public class Beverage {
     private String name;             // display name of the beverage
     private double rate;             // overall rate of the beverage
     private List<RecipePart> recipe; // recipe to pour the beverage
+    private List<String> regions;    // regions the beverage is offered in, null for all
+
+    /**
+     * Return true if the beverage is offered in the specified region.
+     */
+    public boolean isInRegion(String regionId) {
+        return (regions == null) || regions.contains(regionId);
+    }
 }
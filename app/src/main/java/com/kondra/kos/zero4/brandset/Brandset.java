@@ -34,6 +34,7 @@ import lombok.Setter;
 public class Brandset implements IngredientSource {
     private List<Ingredient> ingredients;  // ingredients in the brandset
     private List<Beverage> beverages;      // beverages in the brandset
+    private List<Double> volumePresets;    // preset pour volumes in ml
 
     /**
      * Return the recipe parts for the specified beverage.
@@ -3,18 +3,23 @@
  */
 package com.kondra.kos.zero4.brandset;
 
+import java.util.List;
+
 import com.kosdev.kos.ext.dispense.service.ingredient.BaseIngredient;
 
+import lombok.Getter;
+import lombok.Setter;
+
 /**
- * Ingredient in the Zero4 brandset. Since we don't need any additional
- * properties, this class simply extends {@code BaseIngredient} and
- * defines some constants for our ingredient id's. These constants
- * are simply for convenience so we can hard code the assignment of
- * ingredients to pumps for this demo.
+ * Ingredient in the Zero4 brandset. This class extends {@code BaseIngredient}
+ * with the regions the ingredient is offered in and defines some constants
+ * for our ingredient id's. These constants are simply for convenience so
+ * we can hard code the assignment of ingredients to pumps for this demo.
  *
  * @author David Vogt
  * @version 2025-03-13
  */
+@Getter @Setter
 public class Ingredient extends BaseIngredient {
     // well defined ingredient id's
     public static final String WATER    = "water";
@@ -23,4 +28,13 @@ public class Ingredient extends BaseIngredient {
     public static final String CHERRY   = "cherry";
     public static final String LIME     = "lime";
     public static final String TROPICAL = "tropical";
+
+    private List<String> regions;    // regions the ingredient is offered in, null for all
+
+    /**
+     * Return true if the ingredient is offered in the specified region.
+     */
+    public boolean isInRegion(String regionId) {
+        return (regions == null) || regions.contains(regionId);
+    }
 }
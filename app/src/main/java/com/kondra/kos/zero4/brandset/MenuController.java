@@ -0,0 +1,29 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.brandset;
+
+import com.kondra.kos.zero4.Zero4App;
+import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiController;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint;
+
+/**
+ * Controller that serves the precomputed menu of the active region.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@ApiController(base = "/menu",
+        title = "Menu service",
+        desc = "Beverages, ingredients and volume presets of the active region.")
+public class MenuController {
+    @Autowired
+    private Zero4App app;
+
+    @ApiEndpoint(GET = "/active",
+            desc = "Return the menu of the active region with volume presets in region units, or null if no region is active.")
+    public RegionMenu getActiveMenu() {
+        return app.getActiveMenu();
+    }
+}
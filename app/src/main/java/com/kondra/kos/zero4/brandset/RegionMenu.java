@@ -0,0 +1,106 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.brandset;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import com.fasterxml.jackson.annotation.JsonIgnore;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Menu of the brandset for a single region.
+ * <p>
+ * Beverages and ingredients in the brandset can be limited to specific regions
+ * and volume presets are defined in ml. Rather than filtering and converting
+ * on every request, a menu is built once per installed region when the brandset
+ * loads, containing only what is offered in the region, an index of beverages
+ * by id and the volume presets already converted to the units of the region.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter
+public class RegionMenu {
+    // unit system id that uses us customary units
+    private static final String UNIT_SYSTEM_US = "us";
+    private static final double ML_PER_FLOZ = 29.5735;
+
+    private final String regionId;                     // region of the menu
+    private final String units;                        // display units of volumes
+    private final List<Beverage> beverages;            // beverages offered in the region
+    private final List<Ingredient> ingredients;        // ingredients offered in the region
+    private final List<VolumePreset> volumePresets;    // presets in region units
+    @JsonIgnore
+    private final Map<String, Beverage> beverageIndex; // beverages by id
+
+    private RegionMenu(String regionId, String units, List<Beverage> beverages,
+            List<Ingredient> ingredients, List<VolumePreset> volumePresets) {
+        this.regionId = regionId;
+        this.units = units;
+        this.beverages = Collections.unmodifiableList(beverages);
+        this.ingredients = Collections.unmodifiableList(ingredients);
+        this.volumePresets = Collections.unmodifiableList(volumePresets);
+        this.beverageIndex = new HashMap<>();
+        for (Beverage bev : beverages) {
+            beverageIndex.put(bev.getId(), bev);
+        }
+    }
+
+    /**
+     * Return the beverage with the specified id if it's offered in the region.
+     */
+    public Beverage getBeverage(String id) {
+        return beverageIndex.get(id);
+    }
+
+    /**
+     * Build the menu of the brandset for the specified region.
+     *
+     * @param brandset     the brandset
+     * @param regionId     id of the region
+     * @param unitSystemId unit system of the region, null for metric
+     */
+    public static RegionMenu build(Brandset brandset, String regionId, String unitSystemId) {
+        List<Beverage> beverages = new ArrayList<>();
+        for (Beverage bev : brandset.getBeverages()) {
+            if (bev.isInRegion(regionId)) {
+                beverages.add(bev);
+            }
+        }
+
+        List<Ingredient> ingredients = new ArrayList<>();
+        for (Ingredient ingredient : brandset.getIngredients()) {
+            if (ingredient.isInRegion(regionId)) {
+                ingredients.add(ingredient);
+            }
+        }
+
+        boolean us = UNIT_SYSTEM_US.equals(unitSystemId);
+        List<VolumePreset> presets = new ArrayList<>();
+        if (brandset.getVolumePresets() != null) {
+            for (double ml : brandset.getVolumePresets()) {
+                double value = us ? Math.round(ml / ML_PER_FLOZ * 10) / 10.0 : ml;
+                presets.add(new VolumePreset(ml, value));
+            }
+        }
+
+        return new RegionMenu(regionId, us ? "floz" : "ml", beverages, ingredients, presets);
+    }
+
+    /**
+     * Preset pour volume with the volume to pour and the value to display.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class VolumePreset {
+        private double ml;       // volume to pour in ml
+        private double value;    // volume in region units for display
+    }
+}
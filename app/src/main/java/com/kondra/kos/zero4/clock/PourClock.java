@@ -0,0 +1,32 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.clock;
+
+/**
+ * Source of time and delayed callbacks for pour timing.
+ * <p>
+ * Pour timing is driven by timers, so a simulated pour takes as long as a real
+ * one. By routing all pour timing through this interface, the simulator and
+ * load tests can substitute a {@code VirtualClock} and run long sequences of
+ * pours in milliseconds while keeping the exact ordering of every callback.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public interface PourClock {
+    /**
+     * Return the current time in nanoseconds, for measuring elapsed time.
+     */
+    long nanoTime();
+
+    /**
+     * Return the current wall clock time in milliseconds.
+     */
+    long currentTimeMillis();
+
+    /**
+     * Run the callback after the specified delay.
+     */
+    void schedule(Runnable callback, long delayMs);
+}
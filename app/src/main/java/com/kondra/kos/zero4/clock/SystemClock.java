@@ -0,0 +1,31 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.clock;
+
+import com.kosdev.kos.commons.util.KosUtil;
+
+/**
+ * {@code PourClock} backed by the system clock and the kOS timer.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class SystemClock implements PourClock {
+    public static final SystemClock INSTANCE = new SystemClock();
+
+    @Override
+    public long nanoTime() {
+        return System.nanoTime();
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return System.currentTimeMillis();
+    }
+
+    @Override
+    public void schedule(Runnable callback, long delayMs) {
+        KosUtil.scheduleCallback(callback, delayMs);
+    }
+}
@@ -0,0 +1,119 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.clock;
+
+import java.util.PriorityQueue;
+
+/**
+ * {@code PourClock} where time only moves when the clock is advanced.
+ * <p>
+ * Scheduled callbacks are held in a queue ordered by due time, with callbacks
+ * due at the same time run in the order they were scheduled. Advancing the
+ * clock runs every callback that becomes due, in order, on the calling thread,
+ * with the clock set to the due time of each callback as it runs. Callbacks
+ * may schedule further callbacks, which are run if they become due within
+ * the same advance.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class VirtualClock implements PourClock {
+    private final PriorityQueue<Entry> queue = new PriorityQueue<>();
+    private final long startMillis;   // wall clock time at virtual time zero
+    private long nowNs;               // current virtual time
+    private long seq;                 // tie breaker for callbacks due at the same time
+
+    public VirtualClock(long startMillis) {
+        this.startMillis = startMillis;
+    }
+
+    @Override
+    public synchronized long nanoTime() {
+        return nowNs;
+    }
+
+    @Override
+    public synchronized long currentTimeMillis() {
+        return startMillis + nowNs / 1_000_000;
+    }
+
+    @Override
+    public synchronized void schedule(Runnable callback, long delayMs) {
+        queue.add(new Entry(nowNs + Math.max(0, delayMs) * 1_000_000, seq++, callback));
+    }
+
+    /**
+     * Advance the clock by the specified time, running all callbacks that
+     * become due.
+     */
+    public void advance(long nanos) {
+        advanceTo(nanoTime() + nanos);
+    }
+
+    /**
+     * Advance the clock to the specified time, running all callbacks that
+     * become due. The clock never moves backwards.
+     */
+    public void advanceTo(long targetNs) {
+        while (true) {
+            Entry next;
+            synchronized (this) {
+                next = queue.peek();
+                if (next == null || next.dueNs > targetNs) {
+                    nowNs = Math.max(nowNs, targetNs);
+                    return;
+                }
+                queue.poll();
+                nowNs = Math.max(nowNs, next.dueNs);
+            }
+            next.callback.run();
+        }
+    }
+
+    /**
+     * Advance the clock to the next scheduled callback and run it, along with
+     * any other callbacks due at the same time. Returns false if nothing is
+     * scheduled.
+     */
+    public boolean runNext() {
+        Entry next;
+        synchronized (this) {
+            next = queue.peek();
+        }
+        if (next == null) {
+            return false;
+        }
+        advanceTo(next.dueNs);
+        return true;
+    }
+
+    /**
+     * Run callbacks until none are left.
+     */
+    public void runUntilIdle() {
+        while (runNext()) {
+        }
+    }
+
+    /**
+     * Scheduled callback ordered by due time then scheduling order.
+     */
+    private static class Entry implements Comparable<Entry> {
+        private final long dueNs;
+        private final long seq;
+        private final Runnable callback;
+
+        Entry(long dueNs, long seq, Runnable callback) {
+            this.dueNs = dueNs;
+            this.seq = seq;
+            this.callback = callback;
+        }
+
+        @Override
+        public int compareTo(Entry o) {
+            int cmp = Long.compare(dueNs, o.dueNs);
+            return (cmp != 0) ? cmp : Long.compare(seq, o.seq);
+        }
+    }
+}
@@ -0,0 +1,41 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.hardware;
+
+import com.kondra.kos.zero4.Zero4App;
+import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiController;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint;
+
+/**
+ * Controller that serves the link, stop and volume statistics of the board.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@ApiController(base = "/board",
+        title = "Board service",
+        desc = "Statistics of the zero4 board and its adapter link.")
+public class BoardController {
+    @Autowired
+    private Zero4App app;
+
+    @ApiEndpoint(GET = "/stopStats",
+            desc = "Return the latency from a pour cancel until the board acknowledged the pumps stopped.")
+    public StopLatencyStats getStopStats() {
+        return app.getAssembly().getZero4().getStopStats();
+    }
+
+    @ApiEndpoint(GET = "/linkStats",
+            desc = "Return adapter link session and pump resync statistics.")
+    public LinkStats getLinkStats() {
+        return app.getAssembly().getZero4().getLinkStats();
+    }
+
+    @ApiEndpoint(GET = "/volumeStats",
+            desc = "Return the planned versus delivered volume of all pump runs.")
+    public VolumeStats getVolumeStats() {
+        return app.getAssembly().getZero4().getVolumeStats();
+    }
+}
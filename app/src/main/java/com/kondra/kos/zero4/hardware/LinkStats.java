@@ -0,0 +1,36 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.hardware;
+
+import lombok.Getter;
+
+/**
+ * Statistics about adapter link sessions and the pump resynchronization
+ * performed each time the link comes up.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter
+public class LinkStats {
+    private int sessions;              // number of link sessions seen
+    private double lastResyncMs;       // time from link up until pumps were resynced
+    private double maxResyncMs;        // slowest resync seen
+    private int lastResumed;           // pumps resumed by the last resync
+    private int lastStopped;           // unattended pumps stopped by the last resync
+    private int resyncFailures;        // resyncs that could not complete
+
+    synchronized void recordResync(long nanos, int resumed, int stopped) {
+        sessions++;
+        lastResyncMs = nanos / 1_000_000.0;
+        maxResyncMs = Math.max(maxResyncMs, lastResyncMs);
+        lastResumed = resumed;
+        lastStopped = stopped;
+    }
+
+    synchronized void recordFailure() {
+        sessions++;
+        resyncFailures++;
+    }
+}
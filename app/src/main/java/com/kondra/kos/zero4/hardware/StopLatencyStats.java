@@ -0,0 +1,61 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.hardware;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Tracks the latency from a pour being cancelled until the board
+ * acknowledges that the pumps have stopped. Updates are lock free so
+ * they can be made directly from cancel handlers.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class StopLatencyStats {
+    private final LongAdder count = new LongAdder();
+    private final LongAdder totalNs = new LongAdder();
+    private final AtomicLong maxNs = new AtomicLong();
+    private final AtomicLong lastNs = new AtomicLong();
+    private final LongAdder failures = new LongAdder();
+
+    /**
+     * Record a successful stop that took the specified time.
+     */
+    public void record(long nanos) {
+        count.increment();
+        totalNs.add(nanos);
+        lastNs.set(nanos);
+        maxNs.accumulateAndGet(nanos, Math::max);
+    }
+
+    /**
+     * Record a stop that the board didn't acknowledge.
+     */
+    public void recordFailure() {
+        failures.increment();
+    }
+
+    public long getFailures() {
+        return failures.sum();
+    }
+
+    public long getCount() {
+        return count.sum();
+    }
+
+    public double getMeanMs() {
+        long n = count.sum();
+        return (n == 0) ? 0 : totalNs.sum() / (double)n / 1_000_000;
+    }
+
+    public double getMaxMs() {
+        return maxNs.get() / 1_000_000.0;
+    }
+
+    public double getLastMs() {
+        return lastNs.get() / 1_000_000.0;
+    }
+}
@@ -0,0 +1,66 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.hardware;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Planned versus delivered volume of pump runs. Since the Zero4 pumps
+ * have no flow meters, delivered volume is estimated from the rate and
+ * how long the pump actually ran, less the start latency of the pump.
+ * Volumes are accumulated in microliters so updates are lock free
+ * integer adds.
+ * <p>
+ * The start latency comes from the {@code zero4.microStartLatencyMs} and
+ * {@code zero4.macroStartLatencyMs} properties and defaults to 0. Until
+ * it's set from measurements of the actual pumps, delivered volume is
+ * simply rate times runtime, so only cancelled and cut short runs show
+ * up as under pours.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class VolumeStats {
+    private final LongAdder runs = new LongAdder();
+    private final LongAdder plannedUl = new LongAdder();
+    private final LongAdder deliveredUl = new LongAdder();
+    private final LongAdder overUl = new LongAdder();
+    private final LongAdder underUl = new LongAdder();
+
+    /**
+     * Record a pump run with the planned and delivered volume in ml.
+     */
+    public void record(double plannedMl, double deliveredMl) {
+        long planned = Math.round(plannedMl * 1000);
+        long delivered = Math.round(deliveredMl * 1000);
+        runs.increment();
+        plannedUl.add(planned);
+        deliveredUl.add(delivered);
+        if (delivered > planned) {
+            overUl.add(delivered - planned);
+        } else {
+            underUl.add(planned - delivered);
+        }
+    }
+
+    public long getRuns() {
+        return runs.sum();
+    }
+
+    public double getPlannedMl() {
+        return plannedUl.sum() / 1000.0;
+    }
+
+    public double getDeliveredMl() {
+        return deliveredUl.sum() / 1000.0;
+    }
+
+    public double getOverPourMl() {
+        return overUl.sum() / 1000.0;
+    }
+
+    public double getUnderPourMl() {
+        return underUl.sum() / 1000.0;
+    }
+}
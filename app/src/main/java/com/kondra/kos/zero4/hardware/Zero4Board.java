@@ -5,20 +5,36 @@ package com.kondra.kos.zero4.hardware;
 
 import java.util.ArrayList;
 import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
 
+import com.kondra.kos.zero4.clock.PourClock;
+import com.kondra.kos.zero4.clock.SystemClock;
 import com.kondra.kos.zero4.hardware.pumps.BasePump;
 import com.kondra.kos.zero4.hardware.pumps.MacroPump;
 import com.kondra.kos.zero4.hardware.pumps.MicroPump;
+import com.kondra.kos.zero4.hardware.pumps.PumpDutyCounters;
+import com.kondra.kos.zero4.jfr.PumpRunEvent;
+import com.kondra.kos.zero4.metrics.MetricsRegistry;
+import com.kondra.kos.zero4.trace.PumpEventRecorder;
+import com.kosdev.kos.commons.core.context.annotations.Autowired;
 import com.kosdev.kos.commons.core.service.blink.binarymsg.BinaryMsgSession;
 import com.kosdev.kos.commons.core.service.blink.binarymsg.IfaceClient;
+import com.kosdev.kos.commons.core.service.trouble.TroubleService;
 import com.kosdev.kos.commons.util.KosUtil;
+import com.kosdev.kos.commons.util.convert.Convert;
 import com.kosdev.kos.commons.util.concurrent.future.FutureEvent;
 import com.kosdev.kos.commons.util.concurrent.future.FutureWork;
 import com.kosdev.kos.core.service.assembly.Assembly;
 import com.kosdev.kos.core.service.hardware.IfaceAwareBoard;
 import com.kosdev.kos.ext.dispense.Pump;
 import com.kosdev.kos.ext.dispense.PumpBoard;
+import com.kosdev.kos.ext.dispense.PumpTrouble;
 
+import jdk.jfr.EventType;
+
+import lombok.AccessLevel;
+import lombok.AllArgsConstructor;
 import lombok.Getter;
 import lombok.Setter;
 import lombok.extern.slf4j.Slf4j;
@@ -46,13 +62,30 @@ import lombok.extern.slf4j.Slf4j;
 public class Zero4Board extends PumpBoard implements IfaceAwareBoard {
     // reason codes
     private static final String REASON_errNotConnected = "errNotConnected";
+    // number of pump positions on the board
+    public static final int NUM_PUMPS = 6;
+    // system properties with the start latency of each pump type in ms
+    public static final String MICRO_START_LATENCY_PROP = "zero4.microStartLatencyMs";
+    public static final String MACRO_START_LATENCY_PROP = "zero4.macroStartLatencyMs";
+    // jfr pump run event type, checked before allocating an event per run
+    private static final EventType PUMP_RUN = EventType.getEventType(PumpRunEvent.class);
 
+    @Getter(AccessLevel.NONE)
+    @Autowired
+    private TroubleService troubleService; // used to block pumps that couldn't be resynced
     @Getter
     @Setter
     private IfaceClient<Zero4BoardIface> ifaceClient;
     private MacroPump water; // plain water macro
     private MacroPump carb; // carb water macro
     private List<Pump<?>> micros; // micro pumps
+    private final StopLatencyStats stopStats = new StopLatencyStats(); // cancel to stopped latency
+    private final VolumeStats volumeStats = new VolumeStats(); // planned vs delivered volume
+    private final LinkStats linkStats = new LinkStats(); // link session and resync stats
+    private final PumpEventRecorder tracer = new PumpEventRecorder(4096); // pump event trace
+    private volatile int caps;         // optional frames supported by the linked adapter
+    @Getter(AccessLevel.NONE)
+    private final AtomicReferenceArray<ActivePour> active = new AtomicReferenceArray<>(NUM_PUMPS); // running pour per pump position
 
     /**
      * Create a new Zero4 board.
@@ -70,6 +103,19 @@ public class Zero4Board extends PumpBoard implements IfaceAwareBoard {
         for (int i = 0; i < 4; i++) {
             micros.add(new MicroPump(this, "micro" + (i + 1), null, i));
         }
+
+        // Volume pours are extended by the time a pump takes to reach rate, which
+        // depends on the pump hardware, so it's configured per pump type
+        int microLatencyMs = Integer.getInteger(MICRO_START_LATENCY_PROP, 0);
+        int macroLatencyMs = Integer.getInteger(MACRO_START_LATENCY_PROP, 0);
+        for (Pump<?> micro : micros) {
+            ((BasePump)micro).setStartLatencyMs(microLatencyMs);
+        }
+        carb.setStartLatencyMs(macroLatencyMs);
+        water.setStartLatencyMs(macroLatencyMs);
+
+        // Start flushing pump events to the log in the background
+        tracer.start();
     }
 
     /**
@@ -84,6 +130,31 @@ public class Zero4Board extends PumpBoard implements IfaceAwareBoard {
      * cancelled or aborted.
      */
     public FutureWork tpour(BasePump pump, int duration, double rate) {
+        return tpour(pump, duration, rate, new AtomicInteger(), rate * duration / 1000, null, SystemClock.INSTANCE);
+    }
+
+    /**
+     * Start a time based pour that was planned to deliver the specified volume,
+     * as part of a group of pumps that are stopped together, on a pump that may
+     * already have been started by {@code firePrepared()}.
+     * <p>
+     * The group is a bit mask of the running pumps in the group, so the first
+     * pump in the group to be cancelled stops every running pump in the group
+     * with a single frame and the remaining cancels have nothing to do. If the
+     * bit of the pump is set in the fired mask the board is already running the
+     * staged pour, so only the tracking is started, otherwise the pump is started
+     * as usual. The pour is timed by the specified clock, which is virtual when
+     * the pour is driven by a load test. When the pour ends, the volume delivered
+     * based on how long the pump ran, excluding the start latency of the pump, is
+     * recorded against the planned volume in {@code volumeStats}.
+     */
+    public FutureWork tpour(BasePump pump, int duration, double rate, AtomicInteger stopGroup, double plannedMl,
+            AtomicInteger fired, PourClock clock) {
+        int bit = 1 << pump.getPos();
+        int rateQ8 = Convert.toQ8(rate);
+        PumpRunEvent event = PUMP_RUN.isEnabled() ? new PumpRunEvent() : null;
+        long[] startNs = { Long.MIN_VALUE };
+
         // Create a new future that will perform the requested pour
         FutureWork future = new FutureWork("tpour-" + pump.getName(), f -> {
             // Use the iface to run the pump for the specified duration.
@@ -91,28 +162,187 @@ public class Zero4Board extends PumpBoard implements IfaceAwareBoard {
             // back pump status, use a timer to indicate that the future
             // is complete when the duration is complete. A more robust
             // implementation would send pump status back over the iface.
-            log.info("start: {}", pump.getName());
-            ifaceClient.withCatch(i -> i.startPump(pump.getPos(), rate, duration));
-            KosUtil.scheduleCallback(() -> f.success(), duration);
+            tracer.sample(PumpEventRecorder.START, pump.getPos(), duration);
+            if (event != null) {
+                event.begin();
+            }
+            stopGroup.getAndUpdate(m -> m | bit);
+            startNs[0] = clock.nanoTime();
+            pump.getDuty().recordStart();
+            active.set(pump.getPos(), new ActivePour(rate, clock, startNs[0] + duration * 1_000_000L));
+            if ((fired == null) || ((fired.get() & bit) == 0)) {
+                ifaceClient.withCatch(i -> i.startPump(pump.getPos(), rate, duration));
+            }
+            clock.schedule(() -> f.success(), duration);
         });
 
         // Add a cancel event handler to the future
         future.append("cancel", FutureEvent.CANCEL, f -> {
-            // If cancelled, use the iface to stop the pump
-            log.info("cancel: {}", pump.getName());
-            ifaceClient.withCatch(i -> i.stopPump(pump.getPos()));
+            // If cancelled, stop every running pump in the group in one frame
+            tracer.record(PumpEventRecorder.CANCEL, pump.getPos(), stopGroup.get());
+            if (event != null) {
+                event.cancelled = true;
+            }
+            pump.getDuty().recordCancel();
+            stopGroup(stopGroup, System.nanoTime());
         });
 
         // Add a complete event handler to the future
         future.append("stop", FutureEvent.COMPLETE, f -> {
-            // When the future is complete, regardless if how it ended, log
-            // that the pump has stopped
-            log.info("stop: {}", pump.getName());
+            // When the future is complete, regardless if how it ended, record
+            // that the pump has stopped and remove it from the group
+            tracer.sample(PumpEventRecorder.STOP, pump.getPos(), 0);
+            stopGroup.getAndUpdate(m -> m & ~bit);
+            active.set(pump.getPos(), null);
+            if (startNs[0] != Long.MIN_VALUE) {
+                long ranMs = Math.min((clock.nanoTime() - startNs[0]) / 1_000_000, duration);
+                pump.getDuty().recordRun(ranMs, rateQ8);
+                volumeStats.record(plannedMl, rate * Math.max(0, ranMs - pump.getStartLatencyMs()) / 1000);
+            }
+            if ((event != null) && event.shouldCommit()) {
+                event.pump = pump.getName();
+                event.pos = pump.getPos();
+                event.rate = rate;
+                event.durationMs = duration;
+                event.commit();
+            }
         });
 
         return future;
     }
 
+    /**
+     * Stop all the running pumps in the group using a single stop frame and
+     * record the latency from the cancel until the board acknowledged the stop.
+     * The latency is real time even when the pour runs on a virtual clock. The
+     * group is cleared atomically, so only one caller sends the frame.
+     */
+    private void stopGroup(AtomicInteger stopGroup, long cancelNs) {
+        int mask = stopGroup.getAndSet(0);
+        if (mask == 0) {
+            return;
+        }
+        if (stopPumps(mask)) {
+            stopStats.record(System.nanoTime() - cancelNs);
+        } else {
+            stopStats.recordFailure();
+            tracer.record(PumpEventRecorder.ERROR, -1, mask);
+            tracer.dump("stop failed");
+        }
+    }
+
+    /**
+     * Stop the pumps in the mask and return true if the board acknowledged
+     * every stop. The group stop frame is only used if the adapter reported
+     * support for it. Otherwise, or if the group stop fails, each pump is
+     * stopped through the pump api, which every adapter supports.
+     */
+    private boolean stopPumps(int mask) {
+        Zero4BoardIface iface = ifaceClient.getIface();
+        if (iface == null) {
+            log.error("stop: not connected, pumps may still be running, mask: {}", mask);
+            return false;
+        }
+        if ((caps & Zero4BoardIface.CAP_STOP) != 0) {
+            try {
+                iface.stopPumps(mask);
+                return true;
+            } catch (Exception e) {
+                log.warn("stop: group stop failed, stopping pumps one at a time", e);
+            }
+        }
+
+        boolean stopped = true;
+        for (int pos = 0; pos < NUM_PUMPS; pos++) {
+            if ((mask & (1 << pos)) != 0) {
+                try {
+                    iface.stopPump(pos);
+                } catch (Exception e) {
+                    log.error("stop: failed to stop pump {}", pos, e);
+                    stopped = false;
+                }
+            }
+        }
+        return stopped;
+    }
+
+    /**
+     * Return true if the adapter supports staging pours with {@code prepare()}.
+     */
+    public boolean canPrepare() {
+        return (caps & Zero4BoardIface.CAP_PREPARE) != 0;
+    }
+
+    /**
+     * Stage a pour on the board so it can later be started with a single
+     * frame. The arrays are indexed by pump position and a zero duration
+     * leaves the position unstaged. Returns true only if the adapter
+     * acknowledged the staging, otherwise nothing can be assumed to be
+     * staged and the pumps must be started individually.
+     */
+    public boolean prepare(double[] rates, int[] durationsMs) {
+        Zero4BoardIface iface = ifaceClient.getIface();
+        if ((iface == null) || !canPrepare()) {
+            return false;
+        }
+        try {
+            iface.preparePumps(rates, durationsMs);
+            return true;
+        } catch (Exception e) {
+            log.warn("prepare: staging failed, pumps will be started individually", e);
+            return false;
+        }
+    }
+
+    /**
+     * Clear any pour staged on the board.
+     */
+    public void clearPrepared() {
+        prepare(new double[NUM_PUMPS], new int[NUM_PUMPS]);
+    }
+
+    /**
+     * Start the pumps staged by {@code prepare()} with a single frame and
+     * return the mask of pumps the board actually started, which is zero if
+     * the board isn't connected.
+     */
+    public int firePrepared(int mask) {
+        int[] fired = { 0 };
+        ifaceClient.withCatch(i -> fired[0] = i.firePumps(mask));
+        return fired[0];
+    }
+
+    /**
+     * Register the board metrics: per pump running state, cancel to stopped
+     * latency, planned vs delivered volume and link health.
+     */
+    public void registerMetrics(MetricsRegistry metrics) {
+        for (Pump<?> pump : getPumps()) {
+            int pos = ((BasePump)pump).getPos();
+            String labels = "pump=\"" + pump.getName() + "\"";
+            metrics.gauge("zero4_pump_running", "1 if the pump is running a pour", labels, () -> (active.get(pos) != null) ? 1 : 0);
+            PumpDutyCounters duty = ((BasePump)pump).getDuty();
+            metrics.counter("zero4_pump_starts", "Times the pump was started", labels, duty::getStarts);
+            metrics.counter("zero4_pump_cancels", "Times a pump run was cancelled", labels, duty::getCancels);
+            metrics.counter("zero4_pump_run_ms", "Cumulative pump run time", labels, duty::getRunMs);
+            metrics.counter("zero4_pump_rate_q8_ms", "Cumulative Q8 rate x run time", labels, duty::getRateQ8Ms);
+            metrics.gauge("zero4_holder_assigned", "1 if an ingredient is assigned to the pump holder", labels,
+                    () -> (pump.getHolder().getIngredientId() != null) ? 1 : 0);
+        }
+        metrics.counter("zero4_pump_stops", "Acknowledged stops of cancelled pours", null, stopStats::getCount);
+        metrics.counter("zero4_pump_stop_failures", "Stops of cancelled pours the board didn't acknowledge", null, stopStats::getFailures);
+        metrics.gauge("zero4_pump_stop_latency_mean_ms", "Mean cancel to stopped latency", null, stopStats::getMeanMs);
+        metrics.gauge("zero4_pump_stop_latency_max_ms", "Max cancel to stopped latency", null, stopStats::getMaxMs);
+        metrics.counter("zero4_pump_runs", "Pump runs completed", null, volumeStats::getRuns);
+        metrics.gauge("zero4_volume_planned_ml", "Total planned pump volume", null, volumeStats::getPlannedMl);
+        metrics.gauge("zero4_volume_delivered_ml", "Total estimated delivered pump volume", null, volumeStats::getDeliveredMl);
+        metrics.gauge("zero4_volume_over_ml", "Total volume delivered over plan", null, volumeStats::getOverPourMl);
+        metrics.gauge("zero4_link_connected", "1 if the adapter is linked", null, () -> (ifaceClient.getIface() != null) ? 1 : 0);
+        metrics.counter("zero4_link_sessions", "Adapter link sessions", null, () -> linkStats.getSessions());
+        metrics.counter("zero4_link_resync_failures", "Pump resyncs that failed", null, () -> linkStats.getResyncFailures());
+        metrics.gauge("zero4_link_resync_last_ms", "Time to resync pumps after the last link", null, linkStats::getLastResyncMs);
+    }
+
     /**
      * Part of the {@class Board} class. This defines the type of this board
      * and allows kOS to match incoming adapter connections with this instance.
@@ -133,8 +363,130 @@ public class Zero4Board extends PumpBoard implements IfaceAwareBoard {
         return null;
     }
 
+    /**
+     * Called each time the adapter links to this board. The adapter may have
+     * restarted while pours were running, so once the iface is created the
+     * state of every pump is resynchronized with the pours that are still
+     * active: pumps with an active pour are resumed for the remainder of the
+     * pour and all other pumps are stopped. This takes one exchange if the
+     * adapter supports the sync frame, otherwise one pump api call per pump.
+     * If the resync fails, beverage pours are blocked by a trouble on every
+     * pump until a later resync succeeds. The pour futures are timer based so
+     * they continue unaffected across the restart.
+     */
     @Override
     public void onLinkSession(BinaryMsgSession session) {
-        new Zero4BoardIface(session, ifaceClient);
+        long linkNs = System.nanoTime();
+        Zero4BoardIface iface = new Zero4BoardIface(session, ifaceClient);
+
+        // Until the adapter reports otherwise, only use the frames every adapter supports
+        caps = 0;
+
+        // Query the adapter and resync off the link thread since both wait for a response
+        KosUtil.scheduleCallback(() -> {
+            caps = queryCaps(iface);
+            resync(iface, linkNs);
+        }, 0);
+    }
+
+    /**
+     * Return the optional frames the adapter supports, or none if the
+     * adapter doesn't answer the query.
+     */
+    private int queryCaps(Zero4BoardIface iface) {
+        try {
+            int c = iface.getCaps();
+            log.info("Adapter capabilities: {}", c);
+            return c;
+        } catch (Exception e) {
+            log.info("Adapter doesn't report capabilities, using the pump api only");
+            return 0;
+        }
+    }
+
+    /**
+     * Resynchronize the pumps on the board with the active pours.
+     */
+    private void resync(Zero4BoardIface iface, long linkNs) {
+        double[] rates = new double[NUM_PUMPS];
+        int[] durations = new int[NUM_PUMPS];
+        int expected = 0;
+        for (int pos = 0; pos < NUM_PUMPS; pos++) {
+            ActivePour pour = active.get(pos);
+            int remainingMs = (pour == null) ? 0 : (int)((pour.endNs - pour.clock.nanoTime()) / 1_000_000);
+            if (remainingMs > 0) {
+                rates[pos] = pour.rate;
+                durations[pos] = remainingMs;
+                expected |= 1 << pos;
+            }
+        }
+
+        try {
+            if ((caps & Zero4BoardIface.CAP_SYNC) != 0) {
+                int running = iface.syncPumps(rates, durations);
+                int stopped = Integer.bitCount(running & ~expected);
+                linkStats.recordResync(System.nanoTime() - linkNs, Integer.bitCount(expected), stopped);
+                tracer.record(PumpEventRecorder.RESYNC, -1, running);
+                if (stopped > 0) {
+                    log.warn("resync: stopped {} unattended pumps, mask: {}", stopped, running & ~expected);
+                    tracer.dump("unattended pumps");
+                }
+            } else {
+                // The adapter can't report which pumps were running, so start or stop
+                // every pump through the pump api to put the board in a known state
+                for (int pos = 0; pos < NUM_PUMPS; pos++) {
+                    if (durations[pos] > 0) {
+                        iface.startPump(pos, rates[pos], durations[pos]);
+                    } else {
+                        iface.stopPump(pos);
+                    }
+                }
+                linkStats.recordResync(System.nanoTime() - linkNs, Integer.bitCount(expected), 0);
+                tracer.record(PumpEventRecorder.RESYNC, -1, expected);
+            }
+            troubleService.removeTroubles(t -> t instanceof ResyncTrouble);
+        } catch (Exception e) {
+            linkStats.recordFailure();
+            tracer.record(PumpEventRecorder.ERROR, -1, expected);
+            log.error("resync: failed to sync pumps", e);
+            tracer.dump("resync failed");
+
+            // The state of the pumps on the board is unknown, so block beverage pours on
+            // all of them until a later link session resyncs successfully
+            troubleService.removeTroubles(t -> t instanceof ResyncTrouble);
+            for (Pump<?> pump : getPumps()) {
+                troubleService.add(new ResyncTrouble(pump));
+            }
+        }
+    }
+
+    /**
+     * Return all the pumps on the board.
+     */
+    private List<Pump<?>> getPumps() {
+        List<Pump<?>> pumps = new ArrayList<>(micros);
+        pumps.add(water);
+        pumps.add(carb);
+        return pumps;
+    }
+
+    /**
+     * Rate and end time of the pour running on a pump, on the clock of the pour.
+     */
+    @AllArgsConstructor
+    private static class ActivePour {
+        private final double rate;
+        private final PourClock clock;
+        private final long endNs;
+    }
+
+    /**
+     * Trouble for a pump whose state couldn't be resynced with the board.
+     */
+    public static class ResyncTrouble extends PumpTrouble {
+        public ResyncTrouble(Pump<?> pump) {
+            super(pump);
+            blockBeveragePour();
+        }
     }
 }
@@ -4,13 +4,18 @@
 package com.kondra.kos.zero4.hardware;
 
 import java.io.IOException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicIntegerArray;
 
+import com.kondra.kos.zero4.jfr.BoardMessageEvent;
 import com.kosdev.kos.commons.core.service.blink.binarymsg.BinaryMsg;
 import com.kosdev.kos.commons.core.service.blink.binarymsg.BinaryMsgIface;
 import com.kosdev.kos.commons.core.service.blink.binarymsg.BinaryMsgSession;
 import com.kosdev.kos.commons.core.service.blink.binarymsg.IfaceClient;
 import com.kosdev.kos.commons.util.convert.Convert;
 
+import jdk.jfr.EventType;
+
 /**
  * Iface that provides access to the Zero4 board hardware via adapter.
  * <p>
@@ -22,6 +27,12 @@ import com.kosdev.kos.commons.util.convert.Convert;
  * The Zero4 demo board only supports starting and stopping pumps. It's
  * common that ifaces support both command / response requests as well
  * as real-time events from adapters.
+ * <p>
+ * Stops have their own lane. All other commands wait their turn in a fair
+ * outbound lane with one command in flight at a time, while stops skip the
+ * lane and are sent immediately, so a stop never waits behind queued starts
+ * or sync traffic. A start still waiting in the lane when a stop for its
+ * pump is sent is dropped rather than sent after the stop.
  *
  * @author David Vogt
  * @version 2025-03-13
@@ -30,8 +41,23 @@ public class Zero4BoardIface extends BinaryMsgIface {
     // name of this interface
     public static final String NAME = "tier1.zero4";
 
+    // optional frames an adapter can report support for
+    public static final int CAP_STOP = 0x01;
+    public static final int CAP_SYNC = 0x02;
+    public static final int CAP_PREPARE = 0x04;
+
     // api numbers for the protocol
     private static final int API_PUMP = 2;
+    private static final int API_STOP = 3;
+    private static final int API_SYNC = 4;
+    private static final int API_CAPS = 7;
+    private static final int API_PREPARE = 5;
+    private static final int API_FIRE = 6;
+
+    private static final EventType BOARD_MESSAGE = EventType.getEventType(BoardMessageEvent.class);
+
+    private final Semaphore lane = new Semaphore(1, true); // outbound lane for everything but stops
+    private final AtomicIntegerArray stops = new AtomicIntegerArray(Zero4Board.NUM_PUMPS); // stops sent per pump position
 
     public Zero4BoardIface(BinaryMsgSession session, IfaceClient<Zero4BoardIface> client) {
         super(NAME, session, client, null);
@@ -45,20 +71,185 @@ public class Zero4BoardIface extends BinaryMsgIface {
      * @param durationMs how long to pour
      */
     public void startPump(int pos, double rate, int durationMs) throws IOException {
-        BinaryMsg msg = msg(API_PUMP);
-        msg.writeInt(pos);
-        msg.writeInt(Convert.toQ8(rate));
-        msg.writeInt(durationMs);
-        sendAndRecv(msg);
+        int stopped = stops.get(pos);
+        acquireLane();
+        try {
+            // skip the start if a stop for the pump overtook it in the lane
+            if (stops.get(pos) == stopped) {
+                send(API_PUMP, pumpMsg(pos, rate, durationMs));
+            }
+        } finally {
+            lane.release();
+        }
     }
 
     /**
-     * Stop a pump.
+     * Stop a pump. This skips the outbound lane.
      *
      * @param pos 0-3 are micros, 4/5 are macros
      */
     public void stopPump(int pos) throws IOException {
         // stop the pump by sending a zero rate and duration
-        startPump(pos, 0, 0);
+        stops.incrementAndGet(pos);
+        send(API_PUMP, pumpMsg(pos, 0, 0));
+    }
+
+    /**
+     * Return the optional frames supported by the adapter as a mask of
+     * {@code CAP_} bits. Adapters that predate this frame don't answer it,
+     * in which case only the pump api can be used.
+     */
+    public int getCaps() throws IOException {
+        return roundTrip(API_CAPS, msg(API_CAPS)).readInt();
+    }
+
+    /**
+     * Stop multiple pumps with a single frame. Unlike {@code stopPump()} this
+     * doesn't go through the pump api, so stopping all the pumps of a pour
+     * takes one round trip instead of one per pump. This skips the outbound
+     * lane. Only supported by adapters that report {@code CAP_STOP}.
+     *
+     * @param mask bit mask of pump positions to stop
+     */
+    public void stopPumps(int mask) throws IOException {
+        for (int pos = 0; pos < Zero4Board.NUM_PUMPS; pos++) {
+            if ((mask & (1 << pos)) != 0) {
+                stops.incrementAndGet(pos);
+            }
+        }
+        BinaryMsg msg = msg(API_STOP);
+        msg.writeInt(mask);
+        send(API_STOP, msg);
+    }
+
+    /**
+     * Resynchronize the state of all pumps in one exchange. The board applies
+     * the supplied rate and remaining duration to every pump, where a zero
+     * duration stops the pump, and returns which pumps were running before
+     * the new state was applied. Only supported by adapters that report
+     * {@code CAP_SYNC}.
+     *
+     * @param rates       rate for each pump position
+     * @param durationsMs remaining duration for each pump position
+     * @return bit mask of pump positions that were running
+     */
+    public int syncPumps(double[] rates, int[] durationsMs) throws IOException {
+        BinaryMsg msg = msg(API_SYNC);
+        msg.writeInt(rates.length);
+        for (int i = 0; i < rates.length; i++) {
+            msg.writeInt(Convert.toQ8(rates[i]));
+            msg.writeInt(durationsMs[i]);
+        }
+        return roundTrip(API_SYNC, msg).readInt();
+    }
+
+    /**
+     * Stage the configuration of a pour on the board without starting any
+     * pumps. The board holds the rate and duration of each pump position,
+     * where a zero duration clears the position, until the staged pumps are
+     * started with {@code firePumps()} or replaced by another prepare. Only
+     * supported by adapters that report {@code CAP_PREPARE}.
+     *
+     * @param rates       rate for each pump position
+     * @param durationsMs duration for each pump position
+     */
+    public void preparePumps(double[] rates, int[] durationsMs) throws IOException {
+        BinaryMsg msg = msg(API_PREPARE);
+        msg.writeInt(rates.length);
+        for (int i = 0; i < rates.length; i++) {
+            msg.writeInt(Convert.toQ8(rates[i]));
+            msg.writeInt(durationsMs[i]);
+        }
+        roundTrip(API_PREPARE, msg);
+    }
+
+    /**
+     * Start pumps staged by {@code preparePumps()} with a single frame. The
+     * staged configuration is consumed, and positions that were not staged,
+     * for example because the adapter restarted since the prepare, are not
+     * started.
+     *
+     * @param mask bit mask of pump positions to start
+     * @return bit mask of pump positions that were started
+     */
+    public int firePumps(int mask) throws IOException {
+        int[] stopped = new int[Zero4Board.NUM_PUMPS];
+        for (int pos = 0; pos < stopped.length; pos++) {
+            stopped[pos] = stops.get(pos);
+        }
+        acquireLane();
+        try {
+            // leave out pumps that a stop overtook in the lane
+            for (int pos = 0; pos < stopped.length; pos++) {
+                if (stops.get(pos) != stopped[pos]) {
+                    mask &= ~(1 << pos);
+                }
+            }
+            if (mask == 0) {
+                return 0;
+            }
+            BinaryMsg msg = msg(API_FIRE);
+            msg.writeInt(mask);
+            return send(API_FIRE, msg).readInt();
+        } finally {
+            lane.release();
+        }
+    }
+
+    /**
+     * Return a pump api message.
+     */
+    private BinaryMsg pumpMsg(int pos, double rate, int durationMs) {
+        BinaryMsg msg = msg(API_PUMP);
+        msg.writeInt(pos);
+        msg.writeInt(Convert.toQ8(rate));
+        msg.writeInt(durationMs);
+        return msg;
+    }
+
+    /**
+     * Wait for the outbound lane, send the message and wait for the response.
+     */
+    private BinaryMsg roundTrip(int api, BinaryMsg msg) throws IOException {
+        acquireLane();
+        try {
+            return send(api, msg);
+        } finally {
+            lane.release();
+        }
+    }
+
+    /**
+     * Wait for the outbound lane, failing if the thread is interrupted.
+     */
+    private void acquireLane() throws IOException {
+        try {
+            lane.acquire();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("interrupted waiting for the board", e);
+        }
+    }
+
+    /**
+     * Send the message and wait for the response, recording the round trip
+     * as a JFR event when recording is enabled.
+     */
+    private BinaryMsg send(int api, BinaryMsg msg) throws IOException {
+        if (!BOARD_MESSAGE.isEnabled()) {
+            return sendAndRecv(msg);
+        }
+        BoardMessageEvent event = new BoardMessageEvent();
+        event.begin();
+        try {
+            BinaryMsg resp = sendAndRecv(msg);
+            event.success = true;
+            return resp;
+        } finally {
+            if (event.shouldCommit()) {
+                event.api = api;
+                event.commit();
+            }
+        }
     }
 }
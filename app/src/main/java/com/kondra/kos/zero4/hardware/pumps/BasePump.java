@@ -3,12 +3,17 @@
  */
 package com.kondra.kos.zero4.hardware.pumps;
 
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kondra.kos.zero4.clock.PourClock;
+import com.kondra.kos.zero4.clock.SystemClock;
 import com.kondra.kos.zero4.hardware.Zero4Board;
 import com.kosdev.kos.commons.util.concurrent.future.FutureWork;
 import com.kosdev.kos.ext.dispense.Pump;
 import com.kosdev.kos.ext.dispense.PumpConfig;
 
 import lombok.Getter;
+import lombok.Setter;
 
 /**
  * Base pump for zero4 board. This simply extends the kOS {@code Pump}
@@ -20,6 +25,10 @@ import lombok.Getter;
 abstract public class BasePump extends Pump<PumpConfig> {
     @Getter
     private int pos;    // position of the pump on the board
+    @Getter @Setter
+    private int startLatencyMs;  // time for the pump to reach rate after starting
+    @Getter
+    private final PumpDutyCounters duty = new PumpDutyCounters(); // usage for wear tracking
 
     public BasePump(Zero4Board board, String name, String category, int pos) {
         super(board, name, category);
@@ -43,10 +52,35 @@ abstract public class BasePump extends Pump<PumpConfig> {
      * without flow meters, volume pours are typically just converted to time pours
      * using the volume and requested flow rate. For fixed rate valves, the caller
      * is expected to understand the calibrated rate.
+     * <p>
+     * The volume is converted to a timed pour using the rate, extended by the
+     * start latency of the pump, and the delivered volume is compared to the
+     * requested volume when the pour ends.
      */
     @Override
     public FutureWork vpour(double volume, double rate) {
-        // convert the volume pour to a timed pour
-        return tpour((int)(volume / rate), rate);
+        return tpour(planDuration(volume, rate), rate, volume, new AtomicInteger(), null, SystemClock.INSTANCE);
+    }
+
+    /**
+     * Timed pour of a planned duration, including the start latency, as part of a
+     * group of pumps that may have been started together by a fire frame, timed
+     * by the clock of the pour.
+     */
+    public FutureWork tpour(int duration, double rate, double volume, AtomicInteger stopGroup, AtomicInteger fired, PourClock clock) {
+        return ((Zero4Board)getBoard()).tpour(this, duration, rate, stopGroup, volume, fired, clock);
+    }
+
+    /**
+     * Convert a volume to a pour duration in ms, extended by the start latency
+     * of the pump. The board only accepts whole milliseconds, so the duration
+     * is rounded to the nearest one. Nothing is carried between pours, so
+     * concurrent, cancelled or abandoned pours can't skew later ones.
+     */
+    public int planDuration(double volume, double rate) {
+        if (rate <= 0) {
+            return 0;
+        }
+        return (int)Math.round(volume / rate * 1000) + startLatencyMs;
     }
 }
@@ -0,0 +1,48 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.hardware.pumps;
+
+import com.kondra.kos.zero4.Zero4App;
+import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiController;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint.Param;
+import com.kosdev.kos.commons.core.dispatcher.annotations.HandleVariable;
+import com.kosdev.kos.commons.core.dispatcher.annotations.RequestBody;
+import com.kosdev.kos.ext.dispense.Pump;
+
+/**
+ * Controller for the pump wear thresholds and the reset of replaced pumps.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@ApiController(base = "/duty",
+        title = "Pump duty service",
+        desc = "Pump wear thresholds and counters.")
+public class DutyController {
+    @Autowired
+    private Zero4App app;
+
+    @ApiEndpoint(GET = "/thresholds",
+            desc = "Return the pump wear thresholds that raise a maintenance trouble.")
+    public DutyThresholds getThresholds() {
+        return app.getAssembly().getDutyMonitor().getThresholds();
+    }
+
+    @ApiEndpoint(POST = "/thresholds",
+            desc = "Set the pump wear thresholds that raise a maintenance trouble.")
+    public void setThresholds(@RequestBody DutyThresholds thresholds) {
+        app.getAssembly().getDutyMonitor().setThresholds(thresholds);
+    }
+
+    @ApiEndpoint(POST = "/reset/{pump}",
+            desc = "Reset the wear counters of a replaced pump, clearing its maintenance trouble.",
+            params = @Param(name = "pump", desc = "Path of the replaced pump."))
+    public void reset(@HandleVariable("pump") Pump<?> pump) {
+        if (pump instanceof BasePump) {
+            app.getAssembly().getDutyMonitor().reset((BasePump)pump);
+        }
+    }
+}
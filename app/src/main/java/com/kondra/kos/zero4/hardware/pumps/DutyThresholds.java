@@ -0,0 +1,21 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.hardware.pumps;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Wear thresholds at which a pump should be serviced. A threshold of
+ * zero is ignored.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class DutyThresholds {
+    private long maxStarts = 200_000;          // pump starts
+    private double maxRunHours = 2_000;        // cumulative run time
+    private double maxVolumeMl = 500_000;      // cumulative volume pumped
+}
@@ -0,0 +1,80 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.hardware.pumps;
+
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Usage counters of a pump used to schedule maintenance based on actual
+ * wear. Counters are striped {@code LongAdder}s so updates from the pour
+ * path are constant time and never contend with each other or with the
+ * background task that reads and persists them.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class PumpDutyCounters {
+    private final LongAdder starts = new LongAdder();     // times the pump was started
+    private final LongAdder runMs = new LongAdder();      // cumulative run time
+    private final LongAdder rateQ8Ms = new LongAdder();   // cumulative Q8 rate x run time
+    private final LongAdder cancels = new LongAdder();    // times a run was cancelled
+
+    public void recordStart() {
+        starts.increment();
+    }
+
+    public void recordRun(long ms, int rateQ8) {
+        runMs.add(ms);
+        rateQ8Ms.add(ms * rateQ8);
+    }
+
+    public void recordCancel() {
+        cancels.increment();
+    }
+
+    /**
+     * Add previously persisted totals to the counters.
+     */
+    public void restore(long starts, long runMs, long rateQ8Ms, long cancels) {
+        this.starts.add(starts);
+        this.runMs.add(runMs);
+        this.rateQ8Ms.add(rateQ8Ms);
+        this.cancels.add(cancels);
+    }
+
+    /**
+     * Clear the counters, used when the pump is replaced. Runs recorded while
+     * the reset is in progress may be partially kept, which is harmless as the
+     * pump is idle while it is being replaced.
+     */
+    public void reset() {
+        starts.reset();
+        runMs.reset();
+        rateQ8Ms.reset();
+        cancels.reset();
+    }
+
+    public long getStarts() {
+        return starts.sum();
+    }
+
+    public long getRunMs() {
+        return runMs.sum();
+    }
+
+    public long getRateQ8Ms() {
+        return rateQ8Ms.sum();
+    }
+
+    public long getCancels() {
+        return cancels.sum();
+    }
+
+    /**
+     * Return the estimated volume pumped in ml, from the cumulative Q8 rate x time.
+     */
+    public double getVolumeMl() {
+        return rateQ8Ms.sum() / 256.0 / 1000;
+    }
+}
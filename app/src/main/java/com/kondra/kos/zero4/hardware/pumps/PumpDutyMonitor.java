@@ -0,0 +1,245 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.hardware.pumps;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import com.kosdev.kos.commons.core.service.trouble.TroubleService;
+import com.kosdev.kos.commons.util.KosUtil;
+import com.kosdev.kos.ext.dispense.Pump;
+import com.kosdev.kos.ext.dispense.PumpTrouble;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Persists pump duty counters and raises maintenance troubles.
+ * <p>
+ * The pour path only increments the counters in each pump. This monitor runs
+ * in the background, writing the counters of every pump to a small file every
+ * {@code saveIntervalMs} so they survive restarts, including unclean ones that
+ * skip {@code stop()}, and checking them against the configured wear thresholds
+ * every {@code checkIntervalMs}. The file is only rewritten when a counter has
+ * changed, so an idle dispenser doesn't wear its flash. A crash loses at most
+ * one save interval of counts. When a pump crosses a threshold a
+ * {@code PumpWearTrouble} is
+ * raised once for the pump. The trouble doesn't block pouring, it simply lets
+ * service know the pump is due for replacement. Once the pump is replaced its
+ * counters are reset, which also clears the trouble.
+ * <p>
+ * The thresholds are kept in the same file so that values configured in the
+ * field survive restarts as well.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class PumpDutyMonitor {
+    private static final int VERSION = 2;   // v1 files have no thresholds
+
+    private final List<BasePump> pumps;
+    private final TroubleService troubleService;
+    private final File file;
+    private final Set<String> raised = new HashSet<>(); // pumps with a wear trouble
+    @Getter
+    private volatile DutyThresholds thresholds = new DutyThresholds();
+    @Getter @Setter
+    private long saveIntervalMs = 60 * 1000;            // how often to persist changed counters
+    @Getter @Setter
+    private long checkIntervalMs = 5 * 60 * 1000;       // how often to check the thresholds
+    private volatile boolean running;                   // false once stopped
+    private long savedSum = -1;                         // counter sum of the last save
+    private long lastCheckMs;                           // time of the last threshold check
+
+    public PumpDutyMonitor(List<BasePump> pumps, TroubleService troubleService, File file) {
+        this.pumps = pumps;
+        this.troubleService = troubleService;
+        this.file = file;
+    }
+
+    /**
+     * Restore persisted counters and thresholds and start the background task.
+     */
+    public void start() {
+        restore();
+        running = true;
+        lastCheckMs = System.currentTimeMillis();
+        KosUtil.scheduleCallback(this::task, saveIntervalMs);
+    }
+
+    /**
+     * Stop the background task and save the counters, called when the app stops.
+     */
+    public void stop() {
+        running = false;
+        save();
+    }
+
+    /**
+     * Set the wear thresholds and persist them.
+     */
+    public void setThresholds(DutyThresholds thresholds) {
+        this.thresholds = thresholds;
+        save();
+    }
+
+    /**
+     * Reset the counters of a pump that was replaced and remove its wear
+     * trouble, if any.
+     */
+    public synchronized void reset(BasePump pump) {
+        log.info("Reset duty counters of pump {}: starts: {}, runMs: {}, volumeMl: {}",
+                pump.getName(), pump.getDuty().getStarts(), pump.getDuty().getRunMs(), pump.getDuty().getVolumeMl());
+        pump.getDuty().reset();
+        if (raised.remove(pump.getName())) {
+            troubleService.removeTroubles(t -> (t instanceof PumpWearTrouble) && ((PumpWearTrouble)t).pump == pump);
+        }
+        save();
+    }
+
+    private void task() {
+        if (!running) {
+            return;
+        }
+        try {
+            if (changed()) {
+                save();
+            }
+            long now = System.currentTimeMillis();
+            if (now - lastCheckMs >= checkIntervalMs) {
+                lastCheckMs = now;
+                check();
+            }
+        } finally {
+            KosUtil.scheduleCallback(this::task, saveIntervalMs);
+        }
+    }
+
+    /**
+     * Return true if any counter changed since the last save. Counters only
+     * grow between resets and a reset saves right away, so comparing the sum
+     * of all the counters is enough.
+     */
+    private synchronized boolean changed() {
+        return sum() != savedSum;
+    }
+
+    private long sum() {
+        long sum = 0;
+        for (BasePump pump : pumps) {
+            PumpDutyCounters duty = pump.getDuty();
+            sum += duty.getStarts() + duty.getRunMs() + duty.getRateQ8Ms() + duty.getCancels();
+        }
+        return sum;
+    }
+
+    /**
+     * Raise a wear trouble for each pump that crossed a threshold.
+     */
+    private synchronized void check() {
+        DutyThresholds t = thresholds;
+        for (BasePump pump : pumps) {
+            PumpDutyCounters duty = pump.getDuty();
+            boolean worn = (t.getMaxStarts() > 0 && duty.getStarts() >= t.getMaxStarts())
+                    || (t.getMaxRunHours() > 0 && duty.getRunMs() >= t.getMaxRunHours() * 3600 * 1000)
+                    || (t.getMaxVolumeMl() > 0 && duty.getVolumeMl() >= t.getMaxVolumeMl());
+            if (worn && raised.add(pump.getName())) {
+                log.warn("Pump {} is due for maintenance: starts: {}, runMs: {}, volumeMl: {}",
+                        pump.getName(), duty.getStarts(), duty.getRunMs(), duty.getVolumeMl());
+                troubleService.add(new PumpWearTrouble(pump));
+            }
+        }
+    }
+
+    /**
+     * Write the thresholds and the counters of all pumps to the file.
+     */
+    private synchronized void save() {
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            dir.mkdirs();
+            File tmp = new File(dir, file.getName() + ".tmp");
+            long sum = sum();
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+                DutyThresholds t = thresholds;
+                out.writeInt(VERSION);
+                out.writeLong(t.getMaxStarts());
+                out.writeDouble(t.getMaxRunHours());
+                out.writeDouble(t.getMaxVolumeMl());
+                out.writeInt(pumps.size());
+                for (BasePump pump : pumps) {
+                    PumpDutyCounters duty = pump.getDuty();
+                    out.writeUTF(pump.getName());
+                    out.writeLong(duty.getStarts());
+                    out.writeLong(duty.getRunMs());
+                    out.writeLong(duty.getRateQ8Ms());
+                    out.writeLong(duty.getCancels());
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+            savedSum = sum;
+        } catch (Exception e) {
+            log.warn("Failed to save pump duty counters: {}", file, e);
+        }
+    }
+
+    /**
+     * Restore the persisted thresholds and add the persisted counters to the pumps.
+     */
+    private void restore() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            int version = in.readInt();
+            if (version < 1 || version > VERSION) {
+                return;
+            }
+            if (version >= 2) {
+                DutyThresholds t = new DutyThresholds();
+                t.setMaxStarts(in.readLong());
+                t.setMaxRunHours(in.readDouble());
+                t.setMaxVolumeMl(in.readDouble());
+                thresholds = t;
+            }
+            for (int i = in.readInt(); i > 0; i--) {
+                String name = in.readUTF();
+                long starts = in.readLong();
+                long runMs = in.readLong();
+                long rateQ8Ms = in.readLong();
+                long cancels = in.readLong();
+                for (BasePump pump : pumps) {
+                    if (pump.getName().equals(name)) {
+                        pump.getDuty().restore(starts, runMs, rateQ8Ms, cancels);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to restore pump duty counters: {}", file, e);
+        }
+    }
+
+    /**
+     * Trouble for a pump that crossed a wear threshold. This doesn't
+     * block pouring.
+     */
+    public static class PumpWearTrouble extends PumpTrouble {
+        private final Pump<?> pump;   // worn pump
+
+        public PumpWearTrouble(Pump<?> pump) {
+            super(pump);
+            this.pump = pump;
+        }
+    }
+}
@@ -0,0 +1,28 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a send / receive round trip to the Zero4 adapter.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Name("com.kondra.zero4.BoardMessage")
+@Label("Board Message")
+@Category({ "Zero4", "Board" })
+@Description("Round trip of a message to the Zero4 board adapter")
+public class BoardMessageEvent extends Event {
+    @Label("Api")
+    public int api;
+
+    @Label("Success")
+    public boolean success;
+}
@@ -0,0 +1,28 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for loading the brandset from its KAB.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Name("com.kondra.zero4.BrandsetLoad")
+@Label("Brandset Load")
+@Category({ "Zero4", "Brandset" })
+@Description("Load and parse of the brandset")
+public class BrandsetLoadEvent extends Event {
+    @Label("Beverages")
+    public int beverages;
+
+    @Label("Ingredients")
+    public int ingredients;
+}
@@ -0,0 +1,29 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a rebuild of the beverage graph by the pour engine. While an
+ * ingredient batch is applied, rebuilds are suspended and add no beverages.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Name("com.kondra.zero4.GraphRebuild")
+@Label("Beverage Graph Rebuild")
+@Category({ "Zero4", "Brandset" })
+@Description("Rebuild of the beverage graph by the Zero4 pour engine")
+public class GraphRebuildEvent extends Event {
+    @Label("Beverages")
+    public int beverages;
+
+    @Label("Suspended")
+    public boolean suspended;
+}
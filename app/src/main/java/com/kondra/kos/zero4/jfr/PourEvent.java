@@ -0,0 +1,37 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event for a phase of a beverage pour in the pour engine. The
+ * {@code build} phase covers resolving the recipe into pump futures and
+ * the {@code pour} phase covers the pour from the start of the pumps
+ * until the pour future completes.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Name("com.kondra.zero4.Pour")
+@Label("Pour")
+@Category({ "Zero4", "Pour" })
+@Description("Phase of a beverage pour in the Zero4 pour engine")
+public class PourEvent extends Event {
+    @Label("Phase")
+    public String phase;
+
+    @Label("Beverage")
+    public String bevId;
+
+    @Label("Volume")
+    public double volume;
+
+    @Label("Outcome")
+    public String outcome;
+}
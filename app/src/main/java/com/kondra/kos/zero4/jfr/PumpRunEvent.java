@@ -0,0 +1,39 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+/**
+ * JFR event spanning a pump run from start until it stopped, whether it
+ * ran for its full duration or was cancelled. Named apart from the trace
+ * {@code PumpEvent}, which records individual pump operations.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Name("com.kondra.zero4.Pump")
+@Label("Pump Run")
+@Category({ "Zero4", "Pump" })
+@Description("Pump run on the Zero4 board from start to stop")
+public class PumpRunEvent extends Event {
+    @Label("Pump")
+    public String pump;
+
+    @Label("Position")
+    public int pos;
+
+    @Label("Rate")
+    public double rate;
+
+    @Label("Planned Duration (ms)")
+    public int durationMs;
+
+    @Label("Cancelled")
+    public boolean cancelled;
+}
@@ -0,0 +1,52 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import java.util.List;
+
+import com.kondra.kos.zero4.hardware.pumps.BasePump;
+import com.kondra.kos.zero4.hardware.pumps.PumpDutyMonitor.PumpWearTrouble;
+import com.kosdev.kos.commons.core.service.trouble.Trouble;
+import com.kosdev.kos.commons.core.service.trouble.TroubleListener;
+import com.kosdev.kos.ext.dispense.PumpTrouble;
+
+/**
+ * Trouble listener that records pump troubles in the traffic capture as
+ * blocks and unblocks of the pumps they impact, so a replay blocks the
+ * same pumps at the same points in the traffic no matter what raised the
+ * trouble. Wear troubles don't block pouring, so they're left out.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class BlockCapture implements TroubleListener {
+    private final TrafficCapture capture;
+    private final List<BasePump> pumps;
+
+    public BlockCapture(TrafficCapture capture, List<BasePump> pumps) {
+        this.capture = capture;
+        this.pumps = pumps;
+    }
+
+    @Override
+    public void onTroubleAdded(Trouble trouble) {
+        record(trouble, true);
+    }
+
+    @Override
+    public void onTroubleRemoved(Trouble trouble) {
+        record(trouble, false);
+    }
+
+    private void record(Trouble trouble, boolean blocked) {
+        if (!capture.isRecording() || !(trouble instanceof PumpTrouble) || (trouble instanceof PumpWearTrouble)) {
+            return;
+        }
+        for (BasePump pump : pumps) {
+            if (trouble.isImpacted(pump)) {
+                capture.block(pump.getName(), blocked);
+            }
+        }
+    }
+}
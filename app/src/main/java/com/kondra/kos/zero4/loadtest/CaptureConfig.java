@@ -0,0 +1,19 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of a traffic capture.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class CaptureConfig {
+    private String file = "/tmp/zero4-traffic.cap"; // file to write the capture to
+    private long maxBytes = 16 * 1024 * 1024;        // size at which the file is rotated, 0 for no limit
+}
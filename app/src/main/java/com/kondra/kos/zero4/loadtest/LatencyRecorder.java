@@ -0,0 +1,67 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import java.util.Arrays;
+
+/**
+ * Fixed capacity recorder of latency samples in nanoseconds. Samples are
+ * stored in a preallocated array so that recording doesn't allocate while
+ * the test is running, and percentiles are computed once at the end.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class LatencyRecorder {
+    private final long[] samples;
+    private int count;
+
+    public LatencyRecorder(int capacity) {
+        samples = new long[Math.max(1, capacity)];
+    }
+
+    /**
+     * Record a sample. Samples beyond the capacity are dropped.
+     */
+    public synchronized void record(long nanos) {
+        if (count < samples.length) {
+            samples[count++] = nanos;
+        }
+    }
+
+    /**
+     * Return a summary of the recorded samples in milliseconds.
+     */
+    public synchronized LoadTestReport.Latency summarize() {
+        LoadTestReport.Latency latency = new LoadTestReport.Latency();
+        if (count == 0) {
+            return latency;
+        }
+
+        long[] sorted = Arrays.copyOf(samples, count);
+        Arrays.sort(sorted);
+        long total = 0;
+        for (long s : sorted) {
+            total += s;
+        }
+
+        latency.setCount(count);
+        latency.setMean(toMs(total / count));
+        latency.setP50(toMs(percentile(sorted, 50)));
+        latency.setP90(toMs(percentile(sorted, 90)));
+        latency.setP99(toMs(percentile(sorted, 99)));
+        latency.setP999(toMs(percentile(sorted, 99.9)));
+        latency.setMax(toMs(sorted[sorted.length - 1]));
+        return latency;
+    }
+
+    private static long percentile(long[] sorted, double pct) {
+        int idx = (int)Math.ceil(pct / 100 * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    private static double toMs(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}
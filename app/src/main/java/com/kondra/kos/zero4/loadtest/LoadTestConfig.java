@@ -0,0 +1,33 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import java.util.Map;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of a single load test run. This is deserialized directly
+ * from the body of the load test endpoint so all fields have sensible
+ * defaults and any subset can be supplied.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class LoadTestConfig {
+    private int pours = 1000;                    // number of pours to submit
+    private int concurrency = 1;                 // max pours in flight at once
+    private double arrivalRate = 2;              // mean pour arrivals per second (poisson)
+    private double volume = 250;                 // volume of each pour in ml
+    private Map<String, Double> mix;             // beverage id -> relative weight, null for uniform
+    private double cancelPct = 5;                // percent of pours cancelled part way through
+    private double blockPct = 1;                 // percent of pours that also block a random micro
+    private int blockMs = 2000;                  // how long a pump block lasts
+    private long seed = 1;                       // random seed so runs are repeatable
+    private boolean virtualTime;                 // run pours on a virtual clock instead of real time
+    private long timeoutMs = 60000;              // max time to wait for in-flight pours at the end
+    private String outputFile = "/tmp/zero4-loadtest.json"; // where to write the report
+}
@@ -0,0 +1,113 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+
+import com.kondra.kos.zero4.TestController;
+import com.kondra.kos.zero4.Zero4App;
+import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiController;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint;
+import com.kosdev.kos.commons.core.dispatcher.annotations.RequestBody;
+import com.kosdev.kos.core.app.KosCore;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Controller to run pour load tests headless. A run is started in the
+ * background and the report of the most recent run can be fetched once
+ * it completes. Only one run can be active at a time. Runs are either
+ * synthetic workloads or replays of captured production traffic.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+@ApiController(base = "/loadtest",
+        title = "Load test service",
+        desc = "Drive simulated pours through the beverage pipeline in the simulator and report throughput and latency.")
+public class LoadTestController {
+    @Autowired
+    private Zero4App app;
+    @Autowired
+    private TestController testController;
+    private volatile Thread runner;              // thread of the active run
+    private volatile LoadTestReport lastReport;  // report of the last completed run
+
+    @ApiEndpoint(POST = "/run",
+            desc = "Start a load test run using the supplied config. Fails if a run is already active.")
+    public void run(@RequestBody LoadTestConfig config) {
+        PourLoadTest test = new PourLoadTest(app.getAssembly(), app.getBrandset(), testController);
+        start("zero4-loadtest", () -> test.run(config));
+    }
+
+    @ApiEndpoint(POST = "/replay",
+            desc = "Start a replay of a traffic capture using the supplied config. Fails if a run is already active.")
+    public void replay(@RequestBody ReplayConfig config) {
+        TrafficReplay replay = new TrafficReplay(app.getAssembly(), testController);
+        start("zero4-replay", () -> replay.run(config));
+    }
+
+    /**
+     * Start a run in the background. Traffic capture is suppressed while the
+     * run is active so its pours and blocks don't end up in a capture.
+     */
+    private synchronized void start(String name, Callable<LoadTestReport> run) {
+        checkSimulator();
+        if (runner != null) {
+            throw new IllegalStateException("load test already running");
+        }
+
+        TrafficCapture capture = app.getTrafficCapture();
+        runner = new Thread(() -> {
+            capture.setSuppressed(true);
+            try {
+                lastReport = run.call();
+            } catch (Exception e) {
+                log.error("Run {} failed", name, e);
+            } finally {
+                capture.setSuppressed(false);
+                runner = null;
+            }
+        }, name);
+        runner.setDaemon(true);
+        runner.start();
+    }
+
+    @ApiEndpoint(POST = "/capture/start",
+            desc = "Start capturing pour traffic to the file in the supplied config.")
+    public void startCapture(@RequestBody CaptureConfig config) throws IOException {
+        app.getTrafficCapture().start(new File(config.getFile()), config.getMaxBytes());
+    }
+
+    @ApiEndpoint(POST = "/capture/stop",
+            desc = "Stop capturing pour traffic.")
+    public void stopCapture() throws IOException {
+        app.getTrafficCapture().stop();
+    }
+
+    @ApiEndpoint(POST = "/compare",
+            desc = "Compare the baseline and candidate report files in the request and return the deltas.")
+    public ReportComparison compare(@RequestBody ReportComparison request) throws IOException {
+        return ReportComparison.compare(request.getBaseline(), request.getCandidate());
+    }
+
+    @ApiEndpoint(GET = "/report",
+            desc = "Return the report of the last completed load test run.")
+    public LoadTestReport getReport() {
+        return lastReport;
+    }
+
+    /**
+     * On real hardware a run would pour real drinks, so runs are only allowed in the simulator.
+     */
+    private static void checkSimulator() {
+        if (!KosCore.isSimulator()) {
+            throw new IllegalStateException("load tests only run in the simulator");
+        }
+    }
+}
@@ -0,0 +1,49 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Machine readable results of a load test run. This is written as json
+ * to the output file of the run so that results from different builds
+ * can be compared.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class LoadTestReport {
+    private LoadTestConfig config;     // config used for the run
+    private long startTime;            // wall clock start of the run
+    private long durationMs;           // total run time
+    private int submitted;             // pours that arrived
+    private int started;               // pours that made it to the engine
+    private int succeeded;             // pours that completed normally
+    private int cancelled;             // pours cancelled by the workload
+    private int failed;                // pours that failed or aborted
+    private int unavailable;           // pours rejected as not pourable
+    private long shed;                 // pours rejected by admission control, also counted as failed
+    private int timedOut;              // pours still running at the end of the run
+    private int blocks;                // pump blocks issued
+    private int maxQueueDepth;         // max arrivals waiting for a concurrency slot
+    private double poursPerSec;        // completed pours per second
+    private Latency queueLatency;      // arrival to start of pour
+    private Latency pourLatency;       // arrival to end of pour
+
+    /**
+     * Latency summary in milliseconds.
+     */
+    @Getter @Setter
+    public static class Latency {
+        private int count;
+        private double mean;
+        private double p50;
+        private double p90;
+        private double p99;
+        private double p999;
+        private double max;
+    }
+}
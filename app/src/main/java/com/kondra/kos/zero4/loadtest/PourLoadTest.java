@@ -0,0 +1,156 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kondra.kos.zero4.TestController;
+import com.kondra.kos.zero4.Zero4Assembly;
+import com.kondra.kos.zero4.brandset.Beverage;
+import com.kondra.kos.zero4.brandset.Brandset;
+import com.kondra.kos.zero4.clock.PourClock;
+import com.kondra.kos.zero4.hardware.Zero4Board;
+import com.kosdev.kos.commons.util.concurrent.future.FutureWork;
+import com.kosdev.kos.ext.dispense.Pump;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Workload generator that pushes simulated pours through the beverage nozzle
+ * pipeline, the pour engine and the Zero4 board, the same path a pour from
+ * the UI takes.
+ * <p>
+ * Pours arrive as a poisson process at the configured rate and are started
+ * as soon as one of the concurrency slots is free. Each pour picks a beverage
+ * from the configured mix, and a configurable fraction of pours are cancelled
+ * part way through or block a micro pump using the same trouble that the
+ * {@code TestController} uses. Since all random decisions come from a single
+ * seeded generator, two runs with the same config submit the same workload.
+ * <p>
+ * With virtual time enabled, throughput and latency are reported in virtual
+ * time, see {@code PourRunner}.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class PourLoadTest {
+    private final Zero4Assembly assembly;
+    private final Zero4Board board;
+    private final Brandset brandset;
+    private final TestController testController;
+
+    public PourLoadTest(Zero4Assembly assembly, Brandset brandset, TestController testController) {
+        this.assembly = assembly;
+        this.board = assembly.getZero4();
+        this.brandset = brandset;
+        this.testController = testController;
+    }
+
+    /**
+     * Run the workload described by the config and return the report. The
+     * report is also written to the output file of the config if one is set.
+     */
+    public LoadTestReport run(LoadTestConfig config) throws Exception {
+        Random random = new Random(config.getSeed());
+        List<Beverage> bevs = new ArrayList<>();
+        double[] weights = buildMix(config.getMix(), bevs);
+
+        // In virtual time each pour is timed by a virtual clock that is advanced by this
+        // thread, so pours take no real time but callbacks still run in the same order.
+        // Waiting for a slot advances the clock, since nothing completes otherwise.
+        PourRunner runner = new PourRunner(assembly, testController, config.isVirtualTime(), config.getPours());
+        PourClock clock = runner.getClock();
+        Semaphore slots = new Semaphore(config.getConcurrency());
+        LatencyRecorder queueLatency = new LatencyRecorder(config.getPours());
+        AtomicInteger waiting = new AtomicInteger();
+
+        LoadTestReport report = runner.getReport();
+        report.setConfig(config);
+        long nextArrival = runner.getStartNs();
+
+        for (int i = 0; i < config.getPours(); i++) {
+            // Wait for the next arrival
+            nextArrival += (long)(-Math.log(1 - random.nextDouble()) / config.getArrivalRate() * 1_000_000_000L);
+            runner.waitUntil(nextArrival);
+            long arrival = clock.nanoTime();
+
+            // Draw all random decisions up front so the workload doesn't depend on timing
+            Beverage bev = pick(bevs, weights, random);
+            boolean cancel = random.nextDouble() * 100 < config.getCancelPct();
+            double cancelFraction = random.nextDouble();
+            boolean block = random.nextDouble() * 100 < config.getBlockPct();
+            Pump<?> blockPump = board.getMicros().get(random.nextInt(board.getMicros().size()));
+
+            // Wait for a free slot, tracking how deep the queue gets
+            report.setMaxQueueDepth(Math.max(report.getMaxQueueDepth(), waiting.incrementAndGet()));
+            if (!runner.acquire(slots, config.getTimeoutMs())) {
+                log.warn("No pour completed for {}ms, stopping after {} pours", config.getTimeoutMs(), i);
+                break;
+            }
+            waiting.decrementAndGet();
+            queueLatency.record(clock.nanoTime() - arrival);
+
+            if (block) {
+                int blockId = runner.block(blockPump);
+                clock.schedule(() -> runner.unblock(blockId), config.getBlockMs());
+            }
+
+            FutureWork future = runner.pour(bev.getId(), config.getVolume(), arrival, slots::release);
+            if (future == null) {
+                slots.release();
+                continue;
+            }
+
+            if (cancel) {
+                long pourMs = (long)(config.getVolume() / bev.getRate() * 1000);
+                clock.schedule(() -> future.cancel("loadtest"), (long)(pourMs * cancelFraction));
+            }
+        }
+
+        report.setQueueLatency(queueLatency.summarize());
+        return runner.finish(config.getTimeoutMs(), config.getOutputFile());
+    }
+
+    /**
+     * Resolve the beverage mix into a list of beverages and cumulative weights.
+     * A missing mix weights all brandset beverages equally.
+     */
+    private double[] buildMix(Map<String, Double> mix, List<Beverage> bevs) {
+        List<Double> weights = new ArrayList<>();
+        for (Beverage bev : brandset.getBeverages()) {
+            double weight = (mix == null) ? 1 : mix.getOrDefault(bev.getId(), 0.0);
+            if (weight > 0) {
+                bevs.add(bev);
+                weights.add(weight);
+            }
+        }
+        if (bevs.isEmpty()) {
+            throw new IllegalArgumentException("beverage mix doesn't match any beverages");
+        }
+
+        double[] cumulative = new double[weights.size()];
+        double total = 0;
+        for (int i = 0; i < cumulative.length; i++) {
+            total += weights.get(i);
+            cumulative[i] = total;
+        }
+        return cumulative;
+    }
+
+    private static Beverage pick(List<Beverage> bevs, double[] cumulative, Random random) {
+        double r = random.nextDouble() * cumulative[cumulative.length - 1];
+        for (int i = 0; i < cumulative.length; i++) {
+            if (r < cumulative[i]) {
+                return bevs.get(i);
+            }
+        }
+        return bevs.get(bevs.size() - 1);
+    }
+}
@@ -0,0 +1,268 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import java.io.File;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kondra.kos.zero4.TestController;
+import com.kondra.kos.zero4.Zero4Assembly;
+import com.kondra.kos.zero4.clock.PourClock;
+import com.kondra.kos.zero4.clock.SystemClock;
+import com.kondra.kos.zero4.clock.VirtualClock;
+import com.kondra.kos.zero4.pour.BevPourable;
+import com.kondra.kos.zero4.pour.Zero4PourEngine;
+import com.kosdev.kos.commons.util.KosUtil;
+import com.kosdev.kos.commons.util.concurrent.future.FutureEvent;
+import com.kosdev.kos.commons.util.concurrent.future.FutureWork;
+import com.kosdev.kos.ext.dispense.Pump;
+import com.kosdev.kos.ext.dispense.pipeline.beverage.BeverageNozzlePipeline;
+
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Pours for a single load test or replay run. Both push pours through the
+ * beverage nozzle pipeline, the same path a pour from the UI takes, and
+ * report the same throughput and latency, so this holds the clock, the
+ * counters and the report of the run while the caller decides when to pour.
+ * <p>
+ * With virtual time, every pour of the run is timed by a {@code VirtualClock}
+ * passed with its pourable, so pours complete as soon as the caller advances
+ * the clock while pours from the UI keep running in real time. Pours also do
+ * work on kOS threads, such as waiting for their turn on the nozzle, which
+ * can schedule further virtual callbacks, so waits in virtual time alternate
+ * running the next due callback with a short real-time wait for that work.
+ * Since only the calling thread advances the clock, a wait never blocks
+ * without a bound.
+ * <p>
+ * Pumps blocked by the run are tracked by the id of their block, and any
+ * still blocked when the run finishes are unblocked, so a run that stops
+ * early or a capture that ends part way through a block doesn't leave
+ * pumps blocked. Blocks made outside the run are left alone.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+class PourRunner {
+    private static final long POLL_MS = 10;      // real-time wait for work on other threads
+    private final BeverageNozzlePipeline pipeline;
+    private final Zero4PourEngine engine;
+    private final TestController testController;
+    @Getter
+    private final VirtualClock virtual;          // virtual clock, null in real time
+    @Getter
+    private final PourClock clock;               // clock that times the pours
+    @Getter
+    private final LoadTestReport report = new LoadTestReport();
+    private final LatencyRecorder pourLatency;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    private final AtomicInteger succeeded = new AtomicInteger();
+    private final AtomicInteger cancelled = new AtomicInteger();
+    private final AtomicInteger failed = new AtomicInteger();
+    private final Set<Integer> blocks = ConcurrentHashMap.newKeySet(); // ids of blocks not yet removed
+    @Getter
+    private final long startNs;                  // clock time the run started
+    private final long shedStart;                // pours shed before the run started
+
+    PourRunner(Zero4Assembly assembly, TestController testController, boolean virtualTime, int expectedPours) {
+        this.pipeline = assembly.getBeveragePipeline();
+        this.engine = assembly.getPourEngine();
+        this.testController = testController;
+        virtual = virtualTime ? new VirtualClock(System.currentTimeMillis()) : null;
+        clock = (virtual != null) ? virtual : SystemClock.INSTANCE;
+        pourLatency = new LatencyRecorder(expectedPours);
+        report.setStartTime(System.currentTimeMillis());
+        startNs = clock.nanoTime();
+        shedStart = shed();
+    }
+
+    /**
+     * Wait until the specified clock time, advancing the virtual clock or
+     * sleeping in real time.
+     */
+    void waitUntil(long timeNs) throws InterruptedException {
+        if (virtual != null) {
+            virtual.advanceTo(timeNs);
+        } else {
+            long sleepNs = timeNs - clock.nanoTime();
+            if (sleepNs > 0) {
+                TimeUnit.NANOSECONDS.sleep(sleepNs);
+            }
+        }
+    }
+
+    /**
+     * Acquire a permit from the semaphore, advancing virtual time until one
+     * is released. Returns false if no permit was released and no callback
+     * ran for the timeout.
+     */
+    boolean acquire(Semaphore slots, long timeoutMs) throws InterruptedException {
+        return drive(ms -> slots.tryAcquire(ms, TimeUnit.MILLISECONDS), timeoutMs);
+    }
+
+    /**
+     * Block the pump and return the id of the block.
+     */
+    int block(Pump<?> pump) {
+        report.setBlocks(report.getBlocks() + 1);
+        int id = testController.block(pump);
+        blocks.add(id);
+        return id;
+    }
+
+    /**
+     * Remove a block made by {@code block()}, doing nothing if it's
+     * already been removed.
+     */
+    void unblock(int id) {
+        if (blocks.remove(id)) {
+            testController.unblock(id);
+        }
+    }
+
+    /**
+     * Pour the beverage through the pipeline and return the future of the pour,
+     * or null if the beverage can't be poured. The latency of the pour is
+     * measured from the specified arrival time, and {@code done} is called
+     * once the pour completes.
+     */
+    FutureWork pour(String bevId, double volume, long arrivalNs, Runnable done) throws Exception {
+        report.setSubmitted(report.getSubmitted() + 1);
+
+        // Each pour is a separate press, so give it its own request id
+        String def = "{\"bevId\":\"" + bevId + "\",\"requestId\":\"loadtest-" + report.getSubmitted() + "\"}";
+        BevPourable pourable = (BevPourable)engine.getPourable(def);
+        pourable.setVolume(volume);
+        pourable.setClock(clock);
+        if (!engine.isPourable(pourable)) {
+            report.setUnavailable(report.getUnavailable() + 1);
+            return null;
+        }
+
+        // The pipeline pours the beverage that is selected on it, so selecting and
+        // pouring is done as one step
+        FutureWork future;
+        synchronized (pipeline) {
+            pipeline.setPourable(pourable);
+            future = pipeline.pour();
+        }
+        inFlight.incrementAndGet();
+        report.setStarted(report.getStarted() + 1);
+        AtomicInteger outcome = new AtomicInteger();
+        future.append("loadtest-success", FutureEvent.SUCCESS, f -> outcome.set(1));
+        future.append("loadtest-cancel", FutureEvent.CANCEL, f -> outcome.set(2));
+        future.append("loadtest-complete", FutureEvent.COMPLETE, f -> {
+            pourLatency.record(clock.nanoTime() - arrivalNs);
+            switch (outcome.get()) {
+                case 1 -> succeeded.incrementAndGet();
+                case 2 -> cancelled.incrementAndGet();
+                default -> failed.incrementAndGet();
+            }
+            inFlight.decrementAndGet();
+            done.run();
+        });
+        return future;
+    }
+
+    /**
+     * Return the number of pours started but not yet complete.
+     */
+    int getInFlight() {
+        return inFlight.get();
+    }
+
+    /**
+     * Wait for all in-flight pours to finish, remove any blocks still in
+     * place, then fill in the report and write it to the output file if one
+     * is set.
+     */
+    LoadTestReport finish(long timeoutMs, String outputFile) throws Exception {
+        // Advance the clock until no pours are in flight, then run what's left
+        // such as scheduled unblocks, so the run leaves nothing behind
+        drive(this::awaitIdle, timeoutMs);
+        if (virtual != null) {
+            virtual.runUntilIdle();
+        }
+        report.setTimedOut(inFlight.get());
+
+        // Undo blocks that are still open, such as those of a capture that
+        // ended while a pump was blocked or a real-time run that ended early
+        if (!blocks.isEmpty()) {
+            log.info("Removing {} blocks left open by the run", blocks.size());
+            for (Integer id : blocks) {
+                unblock(id);
+            }
+        }
+
+        long durationNs = clock.nanoTime() - startNs;
+        report.setDurationMs(durationNs / 1_000_000);
+        report.setSucceeded(succeeded.get());
+        report.setCancelled(cancelled.get());
+        report.setFailed(failed.get());
+        report.setShed(shed() - shedStart);
+        report.setPoursPerSec((succeeded.get() + cancelled.get() + failed.get()) / (durationNs / 1_000_000_000.0));
+        report.setPourLatency(pourLatency.summarize());
+
+        if (outputFile != null) {
+            KosUtil.getMapper().writerWithDefaultPrettyPrinter().writeValue(new File(outputFile), report);
+            log.info("Report written to: {}", outputFile);
+        }
+        return report;
+    }
+
+    /**
+     * Wait until the condition holds. In virtual time, the next due callback
+     * is run each time the condition doesn't hold yet, and the condition is
+     * only waited on in real time when no callback is due. Returns false if
+     * the condition didn't hold and no callback ran for the timeout.
+     */
+    private boolean drive(Condition condition, long timeoutMs) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + timeoutMs;
+        while (!condition.await(0)) {
+            if ((virtual != null) && virtual.runNext()) {
+                deadline = System.currentTimeMillis() + timeoutMs;
+                continue;
+            }
+            long remainingMs = deadline - System.currentTimeMillis();
+            if (remainingMs <= 0) {
+                return false;
+            }
+            if (condition.await(Math.min(POLL_MS, remainingMs))) {
+                return true;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Wait up to the timeout for all pours to complete.
+     */
+    private boolean awaitIdle(long timeoutMs) throws InterruptedException {
+        if ((inFlight.get() > 0) && (timeoutMs > 0)) {
+            Thread.sleep(timeoutMs);
+        }
+        return inFlight.get() == 0;
+    }
+
+    /**
+     * Return the pours shed by admission control so far.
+     */
+    private long shed() {
+        return engine.getAdmission().getShedBusy() + engine.getAdmission().getShedDuplicate();
+    }
+
+    /**
+     * Condition that can be waited on with a timeout.
+     */
+    @FunctionalInterface
+    private interface Condition {
+        boolean await(long timeoutMs) throws InterruptedException;
+    }
+}
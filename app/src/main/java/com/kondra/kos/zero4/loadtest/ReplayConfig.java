@@ -0,0 +1,23 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Configuration of a traffic replay run.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class ReplayConfig {
+    private String captureFile;                   // capture to replay
+    private double speed = 1;                     // replay speed, 0 to run in virtual time
+    private double jitterPct;                     // random jitter of event times in percent
+    private long seed = 1;                        // random seed for jitter
+    private long timeoutMs = 60000;               // max time to wait for in-flight pours at the end
+    private String outputFile = "/tmp/zero4-replay.json"; // where to write the report
+}
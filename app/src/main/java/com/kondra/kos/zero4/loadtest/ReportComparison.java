@@ -0,0 +1,57 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import java.io.File;
+import java.io.IOException;
+
+import com.kosdev.kos.commons.util.KosUtil;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Difference between two load test or replay reports, typically a baseline
+ * build and a candidate build run against the same workload. Deltas are
+ * candidate minus baseline, so a negative latency delta is an improvement.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class ReportComparison {
+    private String baseline;           // baseline report file
+    private String candidate;          // candidate report file
+    private double poursPerSecDelta;   // throughput change
+    private double p50Delta;           // pour latency changes in ms
+    private double p90Delta;
+    private double p99Delta;
+    private double maxDelta;
+    private int failedDelta;           // change in failed pours
+    private int unavailableDelta;      // change in unavailable pours
+    private long shedDelta;            // change in pours shed by admission control
+
+    /**
+     * Compare the reports in the specified files.
+     */
+    public static ReportComparison compare(String baselineFile, String candidateFile) throws IOException {
+        LoadTestReport base = KosUtil.getMapper().readValue(new File(baselineFile), LoadTestReport.class);
+        LoadTestReport cand = KosUtil.getMapper().readValue(new File(candidateFile), LoadTestReport.class);
+
+        ReportComparison cmp = new ReportComparison();
+        cmp.setBaseline(baselineFile);
+        cmp.setCandidate(candidateFile);
+        cmp.setPoursPerSecDelta(cand.getPoursPerSec() - base.getPoursPerSec());
+        cmp.setFailedDelta(cand.getFailed() - base.getFailed());
+        cmp.setUnavailableDelta(cand.getUnavailable() - base.getUnavailable());
+        cmp.setShedDelta(cand.getShed() - base.getShed());
+        if (base.getPourLatency() != null && cand.getPourLatency() != null) {
+            cmp.setP50Delta(cand.getPourLatency().getP50() - base.getPourLatency().getP50());
+            cmp.setP90Delta(cand.getPourLatency().getP90() - base.getPourLatency().getP90());
+            cmp.setP99Delta(cand.getPourLatency().getP99() - base.getPourLatency().getP99());
+            cmp.setMaxDelta(cand.getPourLatency().getMax() - base.getPourLatency().getMax());
+        }
+        return cmp;
+    }
+}
@@ -0,0 +1,282 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+
+import com.kosdev.kos.commons.util.KosUtil;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Compact binary capture of pour traffic.
+ * <p>
+ * A capture is a header followed by one record per event. Each record is the
+ * time since the previous event as a varint, a type byte and a small payload:
+ * a pour has its pour id, beverage id and volume, a cancel has the id of the
+ * pour it cancels and a block or unblock has the name of the pump. A typical
+ * pour takes around a dozen bytes, so a full day of traffic is tiny.
+ * <p>
+ * Recording is started and stopped at runtime. While recording, the pour
+ * engine records every pour admitted to the nozzle and every cancel, and a trouble
+ * listener records pumps being blocked and unblocked, so the capture can
+ * later be re-driven by {@code TrafficReplay}. Recording an event only adds
+ * it to a lock-free queue, so the pour path never waits on the file. The
+ * queue is drained to the file by a background task. While a load test or
+ * replay runs, recording is suppressed so synthetic pours don't end up in
+ * the capture.
+ * <p>
+ * A capture left running can't fill the disk: once the file reaches its size
+ * limit it's renamed with a {@code .1} suffix, replacing the previous one, and
+ * recording continues in a new file. At most twice the limit is kept, and each
+ * file can be replayed on its own.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class TrafficCapture {
+    private static final int MAGIC = 0x5a345443; // "Z4TC"
+    private static final int VERSION = 1;
+    private static final int DRAIN_MS = 250;     // how often queued events are written
+
+    // record types
+    public static final int POUR    = 1;
+    public static final int CANCEL  = 2;
+    public static final int BLOCK   = 3;
+    public static final int UNBLOCK = 4;
+
+    private final Queue<Record> queue = new ConcurrentLinkedQueue<>(); // events waiting to be written
+    private DataOutputStream out;     // stream while recording
+    private File file;                // file being recorded to
+    private long maxBytes;            // size at which the file is rotated, 0 for no limit
+    private long lastMs;              // time of the last written event
+    private volatile int session;     // incremented on each start, so stale events are dropped
+    private volatile boolean recording;
+    private volatile boolean suppressed; // true while synthetic traffic is running
+
+    /**
+     * Start recording to the specified file, replacing any active recording.
+     *
+     * @param file     file to record to
+     * @param maxBytes size at which the file is rotated, 0 for no limit
+     */
+    public synchronized void start(File file, long maxBytes) throws IOException {
+        stop();
+        this.file = file;
+        this.maxBytes = maxBytes;
+        lastMs = System.currentTimeMillis();
+        open();
+        int current = ++session;
+        recording = true;
+        KosUtil.scheduleCallback(() -> drainTask(current), DRAIN_MS);
+    }
+
+    /**
+     * Stop recording, writing any queued events, and close the file.
+     */
+    public synchronized void stop() throws IOException {
+        recording = false;
+        if (out != null) {
+            drain();
+            out.close();
+            out = null;
+        }
+        queue.clear();
+    }
+
+    public boolean isRecording() {
+        return recording;
+    }
+
+    /**
+     * Suppress recording while synthetic traffic such as a load test or replay
+     * is running. Pours from the UI made at the same time are not recorded either.
+     */
+    public void setSuppressed(boolean suppressed) {
+        this.suppressed = suppressed;
+    }
+
+    /**
+     * Record a pour arriving.
+     */
+    public void pour(int id, String bevId, double volume) {
+        if (recording && !suppressed) {
+            queue.add(new Record(session, System.currentTimeMillis(), POUR, id, bevId, volume));
+        }
+    }
+
+    /**
+     * Record a pour being cancelled.
+     */
+    public void cancel(int id) {
+        if (recording && !suppressed) {
+            queue.add(new Record(session, System.currentTimeMillis(), CANCEL, id, null, 0));
+        }
+    }
+
+    /**
+     * Record a pump being blocked or unblocked.
+     */
+    public void block(String pump, boolean blocked) {
+        if (recording && !suppressed) {
+            queue.add(new Record(session, System.currentTimeMillis(), blocked ? BLOCK : UNBLOCK, 0, pump, 0));
+        }
+    }
+
+    private synchronized void drainTask(int current) {
+        if ((out != null) && (current == session)) {
+            drain();
+            KosUtil.scheduleCallback(() -> drainTask(current), DRAIN_MS);
+        }
+    }
+
+    /**
+     * Open the file and write the header.
+     */
+    private void open() throws IOException {
+        out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file)));
+        out.writeInt(MAGIC);
+        out.writeInt(VERSION);
+        out.writeLong(lastMs);
+    }
+
+    /**
+     * Move the full file aside, replacing the previous one, and continue in a new file.
+     */
+    private void rotate() throws IOException {
+        out.close();
+        File old = new File(file.getPath() + ".1");
+        Files.move(file.toPath(), old.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        open();
+        log.info("Traffic capture reached {} bytes, previous events moved to: {}", maxBytes, old);
+    }
+
+    /**
+     * Write the queued events of the current session to the file.
+     */
+    private void drain() {
+        try {
+            Record r;
+            while ((r = queue.poll()) != null) {
+                if (r.session != session) {
+                    continue;
+                }
+                // events from different threads may be queued slightly out of order
+                writeVarint(out, Math.max(0, r.timeMs - lastMs));
+                lastMs = Math.max(lastMs, r.timeMs);
+                out.writeByte(r.type);
+                switch (r.type) {
+                    case POUR -> {
+                        writeVarint(out, r.id);
+                        out.writeUTF(r.str);
+                        out.writeFloat((float)r.volume);
+                    }
+                    case CANCEL -> writeVarint(out, r.id);
+                    default -> out.writeUTF(r.str);
+                }
+                if ((maxBytes > 0) && (out.size() >= maxBytes)) {
+                    rotate();
+                }
+            }
+            out.flush();
+        } catch (IOException e) {
+            log.warn("Failed to write traffic capture, recording stopped", e);
+            recording = false;
+            queue.clear();
+        }
+    }
+
+    /**
+     * Read all the events in a capture file. Event times are relative to
+     * the start of the capture.
+     */
+    public static List<Event> read(File file) throws IOException {
+        List<Event> events = new ArrayList<>();
+        try (DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))) {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException("not a traffic capture: " + file);
+            }
+            in.readLong();
+            long timeMs = 0;
+            while (true) {
+                long delta;
+                try {
+                    delta = readVarint(in);
+                } catch (EOFException e) {
+                    break;
+                }
+                timeMs += delta;
+                int type = in.readByte();
+                switch (type) {
+                    case POUR -> events.add(new Event(timeMs, type, (int)readVarint(in), in.readUTF(), in.readFloat()));
+                    case CANCEL -> events.add(new Event(timeMs, type, (int)readVarint(in), null, 0));
+                    default -> events.add(new Event(timeMs, type, 0, in.readUTF(), 0));
+                }
+            }
+        }
+        return events;
+    }
+
+    private static void writeVarint(DataOutputStream out, long value) throws IOException {
+        while ((value & ~0x7fL) != 0) {
+            out.writeByte((int)((value & 0x7f) | 0x80));
+            value >>>= 7;
+        }
+        out.writeByte((int)value);
+    }
+
+    private static long readVarint(DataInputStream in) throws IOException {
+        long value = 0;
+        for (int shift = 0; ; shift += 7) {
+            int b = in.readUnsignedByte();
+            value |= (long)(b & 0x7f) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+    }
+
+    /**
+     * Event waiting to be written.
+     */
+    @AllArgsConstructor
+    private static class Record {
+        private final int session;    // recording session of the event
+        private final long timeMs;    // time the event was recorded
+        private final int type;       // record type
+        private final int id;         // pour id for pours and cancels
+        private final String str;     // beverage id for pours, pump name for blocks
+        private final double volume;  // volume for pours
+    }
+
+    /**
+     * Event read from a capture.
+     */
+    @Getter
+    @AllArgsConstructor
+    public static class Event {
+        private long timeMs;       // time since the start of the capture
+        private int type;          // record type
+        private int id;            // pour id for pours and cancels
+        private String str;        // beverage id for pours, pump name for blocks
+        private double volume;     // volume for pours
+    }
+}
@@ -0,0 +1,121 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import com.kondra.kos.zero4.TestController;
+import com.kondra.kos.zero4.Zero4Assembly;
+import com.kondra.kos.zero4.hardware.Zero4Board;
+import com.kosdev.kos.commons.util.concurrent.future.FutureWork;
+import com.kosdev.kos.ext.dispense.Pump;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Re-drives a {@code TrafficCapture} through the beverage nozzle pipeline.
+ * <p>
+ * Events are replayed with the same relative timing they were captured with,
+ * scaled by the replay speed, so the pour mix, bursts, cancels and pump blocks
+ * of real traffic are reproduced. A speed of zero runs the replay in virtual
+ * time, which keeps the exact ordering of events while taking no real time.
+ * Optional jitter perturbs event times using a seeded generator, so replays
+ * with the same seed are identical. The results use the same report as the
+ * load test so replays of different builds can be compared directly.
+ * <p>
+ * Each captured unblock removes the oldest block the replay made on the
+ * pump, so blocks made from the UI during the replay are left alone, and
+ * blocks still open when the capture ends are removed when the replay
+ * finishes.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class TrafficReplay {
+    private final Zero4Assembly assembly;
+    private final Zero4Board board;
+    private final TestController testController;
+
+    public TrafficReplay(Zero4Assembly assembly, TestController testController) {
+        this.assembly = assembly;
+        this.board = assembly.getZero4();
+        this.testController = testController;
+    }
+
+    /**
+     * Replay the capture described by the config and return the report.
+     */
+    public LoadTestReport run(ReplayConfig config) throws Exception {
+        List<TrafficCapture.Event> events = TrafficCapture.read(new File(config.getCaptureFile()));
+        PourRunner runner = new PourRunner(assembly, testController, config.getSpeed() <= 0, events.size());
+        LoadTestReport report = runner.getReport();
+        Random random = new Random(config.getSeed());
+        double speed = (runner.getVirtual() != null) ? 1 : config.getSpeed();
+        Map<Integer, FutureWork> pours = new HashMap<>();
+        Map<String, Deque<Integer>> blocks = new HashMap<>(); // ids of open blocks by pump name
+
+        // Compute the replay time of each event, applying jitter without reordering events
+        List<Long> times = new ArrayList<>(events.size());
+        long last = runner.getStartNs();
+        for (TrafficCapture.Event ev : events) {
+            double jitter = 1 + (random.nextDouble() * 2 - 1) * config.getJitterPct() / 100;
+            long t = runner.getStartNs() + (long)(ev.getTimeMs() * 1_000_000 * jitter / speed);
+            last = Math.max(last, t);
+            times.add(last);
+        }
+
+        for (int i = 0; i < events.size(); i++) {
+            TrafficCapture.Event ev = events.get(i);
+            runner.waitUntil(times.get(i));
+
+            switch (ev.getType()) {
+                case TrafficCapture.POUR -> {
+                    FutureWork future = runner.pour(ev.getStr(), ev.getVolume(), runner.getClock().nanoTime(), () -> {});
+                    if (future != null) {
+                        pours.put(ev.getId(), future);
+                        report.setMaxQueueDepth(Math.max(report.getMaxQueueDepth(), runner.getInFlight()));
+                    }
+                }
+                case TrafficCapture.CANCEL -> {
+                    FutureWork future = pours.get(ev.getId());
+                    if (future != null) {
+                        future.cancel("replay");
+                    }
+                }
+                case TrafficCapture.BLOCK, TrafficCapture.UNBLOCK -> {
+                    Pump<?> pump = findPump(ev.getStr());
+                    Deque<Integer> ids = blocks.computeIfAbsent(ev.getStr(), k -> new ArrayDeque<>());
+                    if (pump != null && ev.getType() == TrafficCapture.BLOCK) {
+                        ids.add(runner.block(pump));
+                    } else if (!ids.isEmpty()) {
+                        runner.unblock(ids.poll());
+                    }
+                }
+                default -> log.warn("Unknown capture event type: {}", ev.getType());
+            }
+        }
+
+        return runner.finish(config.getTimeoutMs(), config.getOutputFile());
+    }
+
+    private Pump<?> findPump(String name) {
+        for (Pump<?> pump : board.getMicros()) {
+            if (pump.getName().equals(name)) {
+                return pump;
+            }
+        }
+        if (board.getWater().getName().equals(name)) {
+            return board.getWater();
+        }
+        return board.getCarb().getName().equals(name) ? board.getCarb() : null;
+    }
+}
@@ -0,0 +1,86 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.maintenance;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.w3c.dom.Document;
+import org.w3c.dom.Element;
+import org.w3c.dom.NodeList;
+
+/**
+ * Durations of the intents defined in a pump intent xml file.
+ * <p>
+ * The maintenance scheduler needs to know how long an intent occupies a
+ * pump to decide whether it fits in an idle window. Rather than duplicating
+ * the durations in code, they are computed from the same xml file that the
+ * intent factory loads: the duration of an intent is the sum of the
+ * durations of its ops, and the intent type for a pump type is resolved
+ * through the rules, so {@code FLUSH} on a micro pump takes as long as the
+ * intent it references.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class IntentDurations {
+    private final Map<String, Long> intents = new HashMap<>(); // intent name to duration
+    private final Map<String, String> refs = new HashMap<>();  // pumpType/intentType to intent name
+
+    /**
+     * Load the durations from the specified resource.
+     */
+    public static IntentDurations load(ClassLoader loader, String resource) throws IOException {
+        try (InputStream in = loader.getResourceAsStream(resource)) {
+            if (in == null) {
+                throw new IOException("resource not found: " + resource);
+            }
+            Document doc = DocumentBuilderFactory.newInstance().newDocumentBuilder().parse(in);
+            return new IntentDurations(doc);
+        } catch (IOException e) {
+            throw e;
+        } catch (Exception e) {
+            throw new IOException("failed to parse " + resource, e);
+        }
+    }
+
+    IntentDurations(Document doc) {
+        NodeList intentNodes = doc.getElementsByTagName("intent");
+        for (int i = 0; i < intentNodes.getLength(); i++) {
+            Element intent = (Element)intentNodes.item(i);
+            Element parent = (Element)intent.getParentNode();
+            if ("intents".equals(parent.getTagName())) {
+                long durationMs = 0;
+                NodeList ops = intent.getElementsByTagName("op");
+                for (int j = 0; j < ops.getLength(); j++) {
+                    String duration = ((Element)ops.item(j)).getAttribute("duration");
+                    if (!duration.isEmpty()) {
+                        durationMs += Long.parseLong(duration);
+                    }
+                }
+                intents.put(intent.getAttribute("name"), durationMs);
+            } else if ("rule".equals(parent.getTagName()) && "pumpType".equals(parent.getAttribute("type"))) {
+                refs.put(parent.getAttribute("key") + "/" + intent.getAttribute("type"), intent.getAttribute("ref"));
+            }
+        }
+    }
+
+    /**
+     * Return the duration of the intent of the specified type for a pump type.
+     *
+     * @throws IllegalArgumentException if the pump type has no such intent
+     */
+    public long getDurationMs(String pumpType, String intentType) {
+        String ref = refs.get(pumpType + "/" + intentType);
+        Long durationMs = (ref != null) ? intents.get(ref) : null;
+        if (durationMs == null) {
+            throw new IllegalArgumentException("no " + intentType + " intent for " + pumpType + " pumps");
+        }
+        return durationMs;
+    }
+}
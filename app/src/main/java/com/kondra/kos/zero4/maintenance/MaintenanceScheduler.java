@@ -0,0 +1,251 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.maintenance;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.kondra.kos.zero4.clock.PourClock;
+import com.kondra.kos.zero4.clock.SystemClock;
+import com.kondra.kos.zero4.metrics.MetricsRegistry;
+import com.kosdev.kos.commons.util.concurrent.future.FutureEvent;
+import com.kosdev.kos.commons.util.concurrent.future.FutureWork;
+import com.kosdev.kos.ext.dispense.pipeline.ingredient.IngredientNozzlePipeline;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Runs maintenance intents such as prime and flush when the dispenser is
+ * predicted to be idle.
+ * <p>
+ * Intents like {@code micro:flush} occupy a pump for minutes, so running them
+ * on demand can collide with customer pours. The beverage pour engine reports
+ * every pour to this scheduler, which learns traffic by hour of the week using
+ * a {@code TrafficModel}. Periodically the scheduler picks the most overdue
+ * task and runs it on the ingredient pipeline, but only when no beverage is
+ * pouring, the dispenser has been quiet for a while and the model expects no
+ * pours for the duration of the intent. If a beverage pour arrives while an
+ * intent is running, the intent is cancelled immediately and retried in a
+ * later idle window.
+ * <p>
+ * The traffic model and the last run time of each task are kept in a small
+ * file, written when the model learns another hour, when a task completes
+ * and when the app stops. A dispenser that restarts every day still reaches
+ * tasks with longer intervals, and the model keeps learning across restarts.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class MaintenanceScheduler {
+    private static final int VERSION = 1;
+
+    private final IngredientNozzlePipeline pipeline;
+    private final File file;                                       // where state is kept between boots
+    private final TrafficModel model = new TrafficModel(ZoneId.systemDefault());
+    @Getter
+    private final List<MaintenanceTask> tasks = new ArrayList<>();
+    private final AtomicInteger activePours = new AtomicInteger(); // beverage pours in flight
+    private volatile long lastPourMs;                              // time of the last pour, or of start
+    private volatile FutureWork running;                           // running maintenance intent
+    private volatile MaintenanceTask runningTask;                  // task of the running intent
+    private final PourClock clock = SystemClock.INSTANCE; // source of time and timers
+    @Getter @Setter
+    private long checkMs = 30 * 1000;          // how often to look for an idle window
+    @Getter @Setter
+    private long quietMs = 2 * 60 * 1000;      // required time since the last pour
+    @Getter @Setter
+    private double maxExpectedPours = 0.1;     // max pours expected during the intent
+
+    public MaintenanceScheduler(IngredientNozzlePipeline pipeline, File file) {
+        this.pipeline = pipeline;
+        this.file = file;
+    }
+
+    /**
+     * Add a task to the scheduler. Unless a last run time is restored for it
+     * on start, the task is first due one interval from now.
+     */
+    public synchronized void add(MaintenanceTask task) {
+        task.setLastRunMs(clock.currentTimeMillis());
+        tasks.add(task);
+    }
+
+    /**
+     * Restore the persisted state and start looking for idle windows.
+     */
+    public void start() {
+        restore();
+
+        // Nothing is known about traffic before start, so require a full quiet period
+        lastPourMs = clock.currentTimeMillis();
+        model.roll(lastPourMs);
+        clock.schedule(this::check, checkMs);
+    }
+
+    /**
+     * Save the state, called when the app stops.
+     */
+    public void stop() {
+        save();
+    }
+
+    /**
+     * Called by the pour engine when a beverage pour arrives. Any running
+     * maintenance intent is cancelled so the pour can proceed.
+     */
+    public void pourStarted() {
+        activePours.incrementAndGet();
+        lastPourMs = clock.currentTimeMillis();
+        model.recordPour(lastPourMs);
+
+        FutureWork future = running;
+        if (future != null) {
+            future.cancel("preempted");
+        }
+    }
+
+    /**
+     * Called by the pour engine when a beverage pour ends.
+     */
+    public void pourEnded() {
+        activePours.decrementAndGet();
+        lastPourMs = clock.currentTimeMillis();
+    }
+
+    /**
+     * Look for an idle window and run the most overdue task if there is one.
+     */
+    private void check() {
+        try {
+            long now = clock.currentTimeMillis();
+            if (model.roll(now)) {
+                save();
+            }
+            runDueTask(now);
+        } catch (Exception e) {
+            log.error("Failed to run maintenance", e);
+        } finally {
+            clock.schedule(this::check, checkMs);
+        }
+    }
+
+    private synchronized void runDueTask(long now) {
+        if (running != null || activePours.get() > 0 || now - lastPourMs < quietMs) {
+            return;
+        }
+
+        // Find the most overdue task
+        MaintenanceTask task = null;
+        for (MaintenanceTask t : tasks) {
+            if (t.overdueMs(now) >= 0 && (task == null || t.overdueMs(now) > task.overdueMs(now))) {
+                task = t;
+            }
+        }
+
+        // Only run it if no pours are expected while it runs
+        if (task == null || model.expectedPours(now, task.getDurationMs()) > maxExpectedPours) {
+            return;
+        }
+
+        FutureWork future = pipeline.getIntentFuture(task.getPump(), task.getIntentType());
+        MaintenanceTask t = task;
+        future.append("maint-success", FutureEvent.SUCCESS, f -> {
+            t.setLastRunMs(clock.currentTimeMillis());
+            save();
+        });
+        future.append("maint-cancel", FutureEvent.CANCEL, f -> t.setPreempted(t.getPreempted() + 1));
+        future.append("maint-complete", FutureEvent.COMPLETE, f -> {
+            running = null;
+            runningTask = null;
+        });
+
+        log.info("maintenance: {} on {}", task.getIntentType(), task.getPump().getName());
+        running = future;
+        runningTask = task;
+        future.run();
+    }
+
+    /**
+     * Register the maintenance metrics.
+     */
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.gauge("zero4_maintenance_running", "1 if a maintenance intent is running", null, () -> (running != null) ? 1 : 0);
+        metrics.gauge("zero4_pours_active", "Beverage pours in flight", null, activePours::get);
+        for (MaintenanceTask task : tasks) {
+            String labels = "pump=\"" + task.getPump().getName() + "\",intent=\"" + task.getIntentType() + "\"";
+            metrics.counter("zero4_maintenance_preempted", "Maintenance intents preempted by a pour", labels, task::getPreempted);
+        }
+    }
+
+    /**
+     * Write the traffic model and the last run time of every task to the file.
+     */
+    private synchronized void save() {
+        try {
+            File dir = file.getAbsoluteFile().getParentFile();
+            dir.mkdirs();
+            File tmp = new File(dir, file.getName() + ".tmp");
+            try (DataOutputStream out = new DataOutputStream(new FileOutputStream(tmp))) {
+                out.writeInt(VERSION);
+                model.write(out);
+                out.writeInt(tasks.size());
+                for (MaintenanceTask task : tasks) {
+                    out.writeUTF(task.getPump().getName());
+                    out.writeUTF(task.getIntentType());
+                    out.writeLong(task.getLastRunMs());
+                }
+            }
+            Files.move(tmp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (Exception e) {
+            log.warn("Failed to save maintenance state: {}", file, e);
+        }
+    }
+
+    /**
+     * Restore the traffic model and the last run time of the tasks that are
+     * still configured.
+     */
+    private synchronized void restore() {
+        if (!file.exists()) {
+            return;
+        }
+        try (DataInputStream in = new DataInputStream(new FileInputStream(file))) {
+            if (in.readInt() != VERSION) {
+                return;
+            }
+            model.read(in);
+            for (int i = in.readInt(); i > 0; i--) {
+                String pump = in.readUTF();
+                String intentType = in.readUTF();
+                long lastRunMs = in.readLong();
+                for (MaintenanceTask task : tasks) {
+                    if (task.getPump().getName().equals(pump) && task.getIntentType().equals(intentType)) {
+                        task.setLastRunMs(lastRunMs);
+                    }
+                }
+            }
+        } catch (Exception e) {
+            log.warn("Failed to restore maintenance state: {}", file, e);
+        }
+    }
+
+    /**
+     * Return the task currently running, if any.
+     */
+    public MaintenanceTask getRunningTask() {
+        return runningTask;
+    }
+}
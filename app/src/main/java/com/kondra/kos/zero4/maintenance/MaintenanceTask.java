@@ -0,0 +1,40 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.maintenance;
+
+import com.kondra.kos.zero4.hardware.pumps.BasePump;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * A pump intent that should be run periodically, such as priming or
+ * flushing a micro pump.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class MaintenanceTask {
+    private final BasePump pump;      // pump to run the intent on
+    private final String intentType;  // intent type, such as PRIME or FLUSH
+    private final long intervalMs;    // how often the intent should run
+    private final long durationMs;    // how long the intent takes
+    private long lastRunMs;           // when the intent last completed
+    private int preempted;            // times the intent was preempted by a pour
+
+    public MaintenanceTask(BasePump pump, String intentType, long intervalMs, long durationMs) {
+        this.pump = pump;
+        this.intentType = intentType;
+        this.intervalMs = intervalMs;
+        this.durationMs = durationMs;
+    }
+
+    /**
+     * Return how overdue the task is at the specified time, negative if not yet due.
+     */
+    public long overdueMs(long nowMs) {
+        return nowMs - (lastRunMs + intervalMs);
+    }
+}
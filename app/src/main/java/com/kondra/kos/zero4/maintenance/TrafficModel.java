@@ -0,0 +1,137 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.maintenance;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.time.Instant;
+import java.time.ZoneId;
+import java.time.ZonedDateTime;
+
+/**
+ * Learns pour traffic by hour of the week.
+ * <p>
+ * Each hour of the week has a pour rate that is updated as an exponentially
+ * weighted moving average when the hour ends, so the model follows gradual
+ * changes in traffic while remembering weekly patterns such as a lunch rush
+ * or a quiet weekend. The model predicts the number of pours expected in a
+ * window starting now, which the maintenance scheduler uses to find windows
+ * that are likely to be idle. The model can be written to and read from a
+ * stream, so what it learned survives restarts.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class TrafficModel {
+    private static final int HOURS_PER_WEEK = 7 * 24;
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final double ALPHA = 0.3;         // weight of the most recent week
+
+    private final double[] pourRates = new double[HOURS_PER_WEEK]; // pours per hour
+    private final ZoneId zone;
+    private long currentHourMs = -1;                 // start of the hour being counted
+    private int currentCount;                        // pours in the current hour
+
+    public TrafficModel(ZoneId zone) {
+        this.zone = zone;
+    }
+
+    /**
+     * Record a pour at the specified time.
+     */
+    public synchronized void recordPour(long timeMs) {
+        roll(timeMs);
+        currentCount++;
+    }
+
+    /**
+     * Return the number of pours expected in the window starting at the
+     * specified time, based on the learned rates of the hours it overlaps.
+     */
+    public synchronized double expectedPours(long timeMs, long windowMs) {
+        roll(timeMs);
+        double expected = 0;
+        long t = timeMs;
+        long end = timeMs + windowMs;
+        while (t < end) {
+            long hourEnd = (t / HOUR_MS + 1) * HOUR_MS;
+            long span = Math.min(hourEnd, end) - t;
+            expected += pourRates[hourOfWeek(t)] * span / HOUR_MS;
+            t += span;
+        }
+        return expected;
+    }
+
+    /**
+     * Advance the model to the specified time. The count of the current hour
+     * is folded into its rate when the hour ends, and every hour that passed
+     * without a pour is folded in as zero pours. The scheduler calls this on
+     * its own timer so quiet hours are learned even when no pours arrive.
+     * Returns true if any hour was folded in.
+     */
+    public synchronized boolean roll(long timeMs) {
+        long hourMs = timeMs - Math.floorMod(timeMs, HOUR_MS);
+        if (currentHourMs < 0) {
+            currentHourMs = hourMs;
+            return false;
+        }
+        boolean rolled = (currentHourMs < hourMs);
+
+        // Hours beyond a week back would be overwritten by newer hours anyway
+        currentHourMs = Math.max(currentHourMs, hourMs - HOURS_PER_WEEK * HOUR_MS);
+        while (currentHourMs < hourMs) {
+            int hour = hourOfWeek(currentHourMs);
+            pourRates[hour] += ALPHA * (currentCount - pourRates[hour]);
+            currentHourMs += HOUR_MS;
+            currentCount = 0;
+        }
+        return rolled;
+    }
+
+    /**
+     * Return the learned pour rate of the hour of week containing the specified time.
+     */
+    public synchronized double getPourRate(long timeMs) {
+        return pourRates[hourOfWeek(timeMs)];
+    }
+
+    /**
+     * Write the learned rates and the count of the current hour to the stream.
+     */
+    public synchronized void write(DataOutputStream out) throws IOException {
+        out.writeLong(currentHourMs);
+        out.writeInt(currentCount);
+        out.writeInt(HOURS_PER_WEEK);
+        for (double rate : pourRates) {
+            out.writeDouble(rate);
+        }
+    }
+
+    /**
+     * Replace the model with one written by {@code write()}. Hours that pass
+     * between the write and the next roll, such as while the dispenser was
+     * off, are folded in as zero pours.
+     */
+    public synchronized void read(DataInputStream in) throws IOException {
+        long hourMs = in.readLong();
+        int count = in.readInt();
+        int hours = in.readInt();
+        if (hours != HOURS_PER_WEEK) {
+            throw new IOException("unexpected number of hours: " + hours);
+        }
+        double[] rates = new double[HOURS_PER_WEEK];
+        for (int i = 0; i < rates.length; i++) {
+            rates[i] = in.readDouble();
+        }
+        System.arraycopy(rates, 0, pourRates, 0, rates.length);
+        currentHourMs = hourMs;
+        currentCount = count;
+    }
+
+    private int hourOfWeek(long timeMs) {
+        ZonedDateTime t = Instant.ofEpochMilli(timeMs).atZone(zone);
+        return (t.getDayOfWeek().getValue() - 1) * 24 + t.getHour();
+    }
+}
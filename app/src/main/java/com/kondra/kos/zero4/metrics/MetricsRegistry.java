@@ -0,0 +1,223 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.DoubleSupplier;
+import java.util.function.LongSupplier;
+
+/**
+ * Registry of app metrics that renders them in OpenMetrics text format.
+ * <p>
+ * Subsystems register instruments once when they start. Counters are updated
+ * directly by the owning code and gauges are read through suppliers when the
+ * metrics are scraped, so nothing on the pour path touches the registry or
+ * takes a lock. Registration appends to copy-on-write lists, which makes
+ * scraping a plain iteration.
+ * <p>
+ * Scrapes render into a single reusable byte buffer that is written straight
+ * to the response, so a scrape doesn't allocate a string of the whole output.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class MetricsRegistry {
+    private final List<Family> families = new CopyOnWriteArrayList<>();
+    private byte[] buf = new byte[4096]; // reusable scrape buffer
+    private int len;                     // bytes rendered into the buffer
+
+    /**
+     * Register a new counter.
+     */
+    public Counter counter(String name, String help) {
+        Counter counter = new Counter();
+        counter(name, help, counter);
+        return counter;
+    }
+
+    /**
+     * Register an existing counter, which lets the owner create its counters
+     * up front and update them before they are registered.
+     */
+    public void counter(String name, String help, Counter counter) {
+        counter(name, help, null, counter::get);
+    }
+
+    /**
+     * Register a counter whose value is read from the supplier, with
+     * optional labels such as {@code pump="micro1"}.
+     */
+    public void counter(String name, String help, String labels, LongSupplier value) {
+        family(name, "counter", help).samples.add(new Sample(name + "_total", labels, value, null));
+    }
+
+    /**
+     * Register a gauge whose value is read from the supplier, with optional
+     * labels such as {@code pump="micro1"}.
+     */
+    public void gauge(String name, String help, String labels, DoubleSupplier value) {
+        family(name, "gauge", help).samples.add(new Sample(name, labels, null, value));
+    }
+
+    /**
+     * Render all metrics in OpenMetrics text format to the stream.
+     */
+    public synchronized void scrape(OutputStream out) throws IOException {
+        len = 0;
+        for (Family family : families) {
+            put("# TYPE ").put(family.name).put(' ').put(family.type).put('\n');
+            put("# HELP ").put(family.name).put(' ').put(family.help).put('\n');
+            for (Sample sample : family.samples) {
+                put(sample.name);
+                if (sample.labels != null) {
+                    put('{').put(sample.labels).put('}');
+                }
+                put(' ');
+                if (sample.longValue != null) {
+                    put(sample.longValue.getAsLong());
+                } else {
+                    put(sample.doubleValue.getAsDouble());
+                }
+                put('\n');
+            }
+        }
+        put("# EOF\n");
+        out.write(buf, 0, len);
+    }
+
+    /**
+     * Return the family with the specified name, creating it if needed.
+     *
+     * @throws IllegalArgumentException if the family exists with a different type
+     */
+    private synchronized Family family(String name, String type, String help) {
+        for (Family family : families) {
+            if (family.name.equals(name)) {
+                if (!family.type.equals(type)) {
+                    throw new IllegalArgumentException("metric " + name + " is a " + family.type + ", not a " + type);
+                }
+                return family;
+            }
+        }
+        Family family = new Family(name, type, help);
+        families.add(family);
+        return family;
+    }
+
+    private MetricsRegistry put(char c) {
+        ensure(1);
+        buf[len++] = (byte)c;
+        return this;
+    }
+
+    /**
+     * Append a string as utf-8.
+     */
+    private MetricsRegistry put(String str) {
+        ensure(str.length() * 3);
+        for (int i = 0; i < str.length(); i++) {
+            char c = str.charAt(i);
+            if (c < 0x80) {
+                buf[len++] = (byte)c;
+            } else if (c < 0x800) {
+                buf[len++] = (byte)(0xc0 | (c >> 6));
+                buf[len++] = (byte)(0x80 | (c & 0x3f));
+            } else if (Character.isHighSurrogate(c) && i + 1 < str.length()) {
+                int cp = Character.toCodePoint(c, str.charAt(++i));
+                buf[len++] = (byte)(0xf0 | (cp >> 18));
+                buf[len++] = (byte)(0x80 | ((cp >> 12) & 0x3f));
+                buf[len++] = (byte)(0x80 | ((cp >> 6) & 0x3f));
+                buf[len++] = (byte)(0x80 | (cp & 0x3f));
+            } else {
+                buf[len++] = (byte)(0xe0 | (c >> 12));
+                buf[len++] = (byte)(0x80 | ((c >> 6) & 0x3f));
+                buf[len++] = (byte)(0x80 | (c & 0x3f));
+            }
+        }
+        return this;
+    }
+
+    /**
+     * Append the decimal digits of a long without going through a string.
+     */
+    private MetricsRegistry put(long value) {
+        if (value == Long.MIN_VALUE) {
+            return put(Long.toString(value));
+        }
+        ensure(20);
+        if (value < 0) {
+            buf[len++] = '-';
+            value = -value;
+        }
+        int start = len;
+        do {
+            buf[len++] = (byte)('0' + value % 10);
+            value /= 10;
+        } while (value != 0);
+        for (int i = start, j = len - 1; i < j; i++, j--) {
+            byte b = buf[i];
+            buf[i] = buf[j];
+            buf[j] = b;
+        }
+        return this;
+    }
+
+    /**
+     * Append a double in OpenMetrics form. Whole values, which most gauges
+     * are, are written as longs so they don't allocate.
+     */
+    private MetricsRegistry put(double value) {
+        if (Double.isNaN(value)) {
+            return put("NaN");
+        } else if (Double.isInfinite(value)) {
+            return put((value > 0) ? "+Inf" : "-Inf");
+        } else if (value == Math.rint(value) && Math.abs(value) < 1e15) {
+            return put((long)value);
+        }
+        return put(Double.toString(value));
+    }
+
+    private void ensure(int n) {
+        if (len + n > buf.length) {
+            buf = Arrays.copyOf(buf, Math.max(buf.length * 2, len + n));
+        }
+    }
+
+    /**
+     * Metric family: a named metric and all of its labeled samples.
+     */
+    private static class Family {
+        private final String name;
+        private final String type;
+        private final String help;
+        private final List<Sample> samples = new CopyOnWriteArrayList<>();
+
+        Family(String name, String type, String help) {
+            this.name = name;
+            this.type = type;
+            this.help = help;
+        }
+    }
+
+    /**
+     * Single sample of a family, read from either a long or double supplier.
+     */
+    private static class Sample {
+        private final String name;
+        private final String labels;
+        private final LongSupplier longValue;
+        private final DoubleSupplier doubleValue;
+
+        Sample(String name, String labels, LongSupplier longValue, DoubleSupplier doubleValue) {
+            this.name = name;
+            this.labels = labels;
+            this.longValue = longValue;
+            this.doubleValue = doubleValue;
+        }
+    }
+}
@@ -0,0 +1,76 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.metrics;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Serves app metrics for scraping by a Prometheus compatible agent.
+ * <p>
+ * kOS endpoints serialize what they return as json, so a scrape returned from
+ * an {@code ApiController} arrives as a quoted json string rather than
+ * OpenMetrics text. This serves {@code GET /metrics} from the http server
+ * built into the jdk instead, with the OpenMetrics content type, and renders
+ * the registry straight into the response body. The server listens on
+ * loopback by default, so only an agent running on the device can scrape it.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class MetricsServer {
+    public static final String CONTENT_TYPE = "application/openmetrics-text; version=1.0.0; charset=utf-8";
+
+    private final MetricsRegistry metrics;
+    private final InetSocketAddress address;
+    private HttpServer server;
+
+    public MetricsServer(MetricsRegistry metrics, InetSocketAddress address) {
+        this.metrics = metrics;
+        this.address = address;
+    }
+
+    /**
+     * Start serving metrics.
+     */
+    public synchronized void start() throws IOException {
+        server = HttpServer.create(address, 0);
+        server.createContext("/metrics", this::handle);
+        server.start();
+        log.info("Metrics served at: http://{}:{}/metrics", address.getHostString(), server.getAddress().getPort());
+    }
+
+    /**
+     * Stop serving metrics.
+     */
+    public synchronized void stop() {
+        if (server != null) {
+            server.stop(0);
+            server = null;
+        }
+    }
+
+    private void handle(HttpExchange exchange) throws IOException {
+        try {
+            if (!"GET".equals(exchange.getRequestMethod())) {
+                exchange.sendResponseHeaders(405, -1);
+                return;
+            }
+            exchange.getResponseHeaders().set("Content-Type", CONTENT_TYPE);
+            exchange.sendResponseHeaders(200, 0);
+            try (OutputStream out = exchange.getResponseBody()) {
+                metrics.scrape(out);
+            }
+        } finally {
+            exchange.close();
+        }
+    }
+}
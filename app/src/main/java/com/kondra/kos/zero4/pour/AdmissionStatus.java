@@ -0,0 +1,24 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.pour;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Snapshot of the pour admission of a nozzle, returned to the UI so a pour
+ * rejected as busy knows when to retry.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class AdmissionStatus {
+    private int depth;             // pours admitted, including the one pouring
+    private int maxWaiting;        // max pours waiting behind the one pouring
+    private long retryAfterMs;     // time until a pour would be admitted, 0 if now
+    private long admitted;         // pours admitted
+    private long shedBusy;         // pours rejected because the queue was full
+    private long shedDuplicate;    // pours rejected as duplicates
+}
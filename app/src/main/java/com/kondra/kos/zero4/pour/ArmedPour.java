@@ -0,0 +1,124 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.pour;
+
+import com.kondra.kos.zero4.hardware.Zero4Board;
+import com.kondra.kos.zero4.hardware.pumps.BasePump;
+import com.kosdev.kos.ext.dispense.pipeline.beverage.RecipeExtractor;
+
+import lombok.Getter;
+
+/**
+ * Resolved plan for pouring a beverage: the pumps found by the recipe
+ * extractor and the volume, rate and duration each of them pours.
+ * <p>
+ * Every pour is built from a plan. When a beverage is selected in the UI the
+ * pour engine builds the plan ahead of time and holds it as an armed pour, so
+ * pressing pour only has to build the futures and, if the plan was staged on
+ * the board, start every pump with a single fire frame.
+ * <p>
+ * Durations are planned by the pump, the same as a volume pour of the pump.
+ * <p>
+ * A plan is shared by the threads that select, pour and expire it, so the
+ * parts are only exposed one at a time and never as the arrays themselves.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class ArmedPour {
+    private static final double VOLUME_TOLERANCE = 0.01; // ml, absorbs unit conversion rounding
+
+    @Getter
+    private final String bevId;                // beverage to pour
+    @Getter
+    private final double volume;               // total volume of the pour
+    @Getter
+    private final RecipeExtractor extractor;   // pumps resolved from the beverage graph
+    @Getter
+    private final int graphVersion;            // graph version the extractor was resolved against
+    private final BasePump[] pumps;            // pump of each recipe part
+    private final double[] volumes;            // volume of each recipe part
+    private final double[] rates;              // rate of each recipe part
+    private final int[] durations;             // planned duration of each recipe part
+    private final double[] stagedRates = new double[Zero4Board.NUM_PUMPS]; // rates by pump position
+    private final int[] stagedDurations = new int[Zero4Board.NUM_PUMPS];   // durations by pump position
+    @Getter
+    private int mask;                          // bit mask of pump positions in the plan
+
+    public ArmedPour(String bevId, double volume, RecipeExtractor extractor, int graphVersion, int parts) {
+        this.bevId = bevId;
+        this.volume = volume;
+        this.extractor = extractor;
+        this.graphVersion = graphVersion;
+        pumps = new BasePump[parts];
+        volumes = new double[parts];
+        rates = new double[parts];
+        durations = new int[parts];
+    }
+
+    /**
+     * Set a recipe part, planning its duration from the volume, rate and
+     * start latency of the pump.
+     */
+    void setPart(int idx, BasePump pump, double partVolume, double rate) {
+        pumps[idx] = pump;
+        volumes[idx] = partVolume;
+        rates[idx] = rate;
+        durations[idx] = pump.planDuration(partVolume, rate);
+        stagedRates[pump.getPos()] = rate;
+        stagedDurations[pump.getPos()] = durations[idx];
+        mask |= 1 << pump.getPos();
+    }
+
+    /**
+     * Return the number of recipe parts.
+     */
+    public int getParts() {
+        return pumps.length;
+    }
+
+    public BasePump getPump(int idx) {
+        return pumps[idx];
+    }
+
+    public double getVolume(int idx) {
+        return volumes[idx];
+    }
+
+    public double getRate(int idx) {
+        return rates[idx];
+    }
+
+    public int getDuration(int idx) {
+        return durations[idx];
+    }
+
+    /**
+     * Stage the plan on the board, returning true if the adapter
+     * acknowledged it.
+     */
+    boolean prepare(Zero4Board board) {
+        return board.prepare(stagedRates, stagedDurations);
+    }
+
+    /**
+     * Return the duration of the longest part, which is how long the pour runs.
+     */
+    public int getMaxDurationMs() {
+        int max = 0;
+        for (int d : durations) {
+            max = Math.max(max, d);
+        }
+        return max;
+    }
+
+    /**
+     * Return true if the plan pours the specified beverage and volume. The
+     * volume of the pour may have been converted differently than the volume
+     * of the selection, so it only has to match within a small tolerance.
+     */
+    boolean matches(String bevId, double volume) {
+        return this.bevId.equals(bevId) && (Math.abs(this.volume - volume) < VOLUME_TOLERANCE);
+    }
+}
@@ -4,6 +4,9 @@
 package com.kondra.kos.zero4.pour;
 
 import java.io.IOException;
+
+import com.kondra.kos.zero4.clock.PourClock;
+import com.kondra.kos.zero4.clock.SystemClock;
 import com.kosdev.kos.commons.util.KosUtil;
 import com.kosdev.kos.ext.dispense.pipeline.beverage.Pourable;
 
@@ -26,6 +29,8 @@ import lombok.Setter;
 public class BevPourable extends Pourable {
     @Getter
     private BevDef bevDef;             // the definition of what to pour
+    @Getter @Setter
+    private PourClock clock = SystemClock.INSTANCE; // times the pour, virtual in load tests
 
     /**
      * Create a new pourable from the specified definition string. We expect
@@ -51,5 +56,7 @@ public class BevPourable extends Pourable {
     @Getter @Setter
     public static class BevDef {
         private String bevId;      // beverage id
+        private String nozzle = Zero4PourEngine.NOZZLE; // nozzle the beverage is poured from
+        private String requestId;  // client id of the pour, the same when the UI retries it
     }
 }
@@ -0,0 +1,289 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.pour;
+
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+import com.kondra.kos.zero4.clock.PourClock;
+import com.kondra.kos.zero4.metrics.Counter;
+import com.kondra.kos.zero4.metrics.MetricsRegistry;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Admission control and wait queue for the pours of a nozzle.
+ * <p>
+ * A nozzle pours one beverage at a time, so pours that arrive while another
+ * is pouring wait in a queue and start in order as the pour ahead of them
+ * ends. The queue is bounded, since a UI stuck in a retry loop could
+ * otherwise pile up enough pours that a real press waits for seconds. Every
+ * pour is admitted here before any work is done for it, and once the queue
+ * is full further pours are rejected immediately with a retry hint, the time
+ * until the pouring pour is expected to end.
+ * <p>
+ * A UI that retries a pour it already sent, such as after a timeout, sends
+ * the same client request id, and a pour whose request id is already in the
+ * queue is rejected as a duplicate. Pours without a request id can only be
+ * matched by beverage and volume, which legitimately repeat when several
+ * people pour the same drink, so they are only rejected as duplicates within
+ * a short debounce window, which catches a double press of the pour button.
+ * <p>
+ * Pours leave the queue when their future completes. In case a future is
+ * built but never run, a pour at the head of the queue also expires a grace
+ * period after it would have ended, so the pours behind it aren't stuck.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class PourAdmission {
+    // reason codes
+    public static final String REASON_errBusy = "errBusy";
+    public static final String REASON_errDuplicate = "errDuplicate";
+    private static final long GRACE_MS = 5000;       // time after the expected end before the head expires
+    private static final long MIN_RETRY_MS = 250;    // smallest retry hint
+    private static final long DEBOUNCE_MS = 500;     // window for duplicates of pours without a request id
+
+    private final PourClock clock;                   // source of time
+    private final Deque<Ticket> queue = new ArrayDeque<>(); // admitted pours, the head is pouring
+    private final Counter admitted = new Counter();  // pours admitted
+    private final Counter expired = new Counter();   // pours that expired at the head of the queue
+    private final Counter shedBusy = new Counter();  // pours rejected because the queue was full
+    private final Counter shedDuplicate = new Counter(); // pours rejected as duplicates
+    @Getter @Setter
+    private volatile int maxWaiting = 3;             // max pours waiting behind the one pouring
+
+    public PourAdmission(PourClock clock) {
+        this.clock = clock;
+    }
+
+    /**
+     * Return the key that identifies a pour of the beverage and volume. The
+     * volume is rounded to 0.01ml so conversion noise doesn't hide a duplicate.
+     */
+    public static String key(String bevId, double volume) {
+        return bevId + "@" + Math.round(volume * 100);
+    }
+
+    /**
+     * Try to admit a pour to the queue. The request id is the client id of
+     * the pour, or null if the client didn't send one, and the key is the
+     * beverage and volume from {@code key()}. Returns a ticket to release
+     * when the pour completes, with a rejection reason and retry hint if the
+     * pour wasn't admitted.
+     */
+    public synchronized Ticket admit(String requestId, String key) {
+        long now = clock.nanoTime();
+        for (Ticket t : queue) {
+            if (isDuplicate(t, requestId, key, now)) {
+                shedDuplicate.inc();
+                return new Ticket(requestId, key, REASON_errDuplicate, 0);
+            }
+        }
+        if (queue.size() > maxWaiting) {
+            shedBusy.inc();
+            return new Ticket(requestId, key, REASON_errBusy, getRetryAfterMs());
+        }
+
+        Ticket ticket = new Ticket(requestId, key, null, 0);
+        ticket.admitNs = now;
+        queue.addLast(ticket);
+        admitted.inc();
+        if (queue.peekFirst() == ticket) {
+            toHead(ticket);
+        }
+        return ticket;
+    }
+
+    /**
+     * Return true if a pour is a duplicate of the admitted ticket: it has the
+     * same request id, or neither has a request id and it has the same key
+     * within the debounce window.
+     */
+    private static boolean isDuplicate(Ticket t, String requestId, String key, long now) {
+        if (requestId != null) {
+            return requestId.equals(t.requestId);
+        }
+        return (t.requestId == null) && t.key.equals(key) && (now - t.admitNs < DEBOUNCE_MS * 1_000_000);
+    }
+
+    /**
+     * Set how long the pour of the ticket is expected to run once it starts,
+     * which is only known once the pour has been planned.
+     */
+    public synchronized void setDuration(Ticket ticket, long durationMs) {
+        ticket.durationMs = durationMs;
+    }
+
+    /**
+     * Run the callback when the pour of the ticket reaches the head of the
+     * queue, which is immediately if the nozzle is free. The callback runs
+     * on the thread that releases the pour ahead, and never runs if the
+     * ticket is released first.
+     */
+    public void awaitTurn(Ticket ticket, Runnable onTurn) {
+        synchronized (this) {
+            if (queue.peekFirst() != ticket) {
+                ticket.onTurn = onTurn;
+                return;
+            }
+            ticket.start(clock.nanoTime());
+        }
+        onTurn.run();
+    }
+
+    /**
+     * Remove an admitted pour from the queue, starting the next one if the
+     * pour was at the head.
+     */
+    public void release(Ticket ticket) {
+        Runnable next = null;
+        synchronized (this) {
+            boolean head = (queue.peekFirst() == ticket);
+            if (!queue.remove(ticket) || !head || queue.isEmpty()) {
+                return;
+            }
+            Ticket t = queue.peekFirst();
+            toHead(t);
+            if (t.onTurn != null) {
+                t.start(clock.nanoTime());
+                next = t.onTurn;
+                t.onTurn = null;
+            }
+        }
+        if (next != null) {
+            next.run();
+        }
+    }
+
+    /**
+     * Note that the ticket reached the head of the queue and check it for
+     * expiry once it should have ended.
+     */
+    private void toHead(Ticket ticket) {
+        ticket.headNs = clock.nanoTime();
+        clock.schedule(() -> expire(ticket), ticket.durationMs + GRACE_MS);
+    }
+
+    /**
+     * Release the ticket if it's still at the head of the queue a grace period
+     * after it should have ended, otherwise check again when it should end.
+     */
+    private void expire(Ticket ticket) {
+        long remainingMs;
+        synchronized (this) {
+            if (queue.peekFirst() != ticket) {
+                return;
+            }
+            long baseNs = ticket.started ? ticket.startNs : ticket.headNs;
+            remainingMs = (baseNs - clock.nanoTime()) / 1_000_000 + ticket.durationMs + GRACE_MS;
+        }
+        if (remainingMs > 0) {
+            clock.schedule(() -> expire(ticket), remainingMs);
+            return;
+        }
+        log.warn("Pour {} never completed, releasing the nozzle", ticket.key);
+        expired.inc();
+        release(ticket);
+    }
+
+    /**
+     * Return the number of pours admitted, including the one pouring.
+     */
+    public synchronized int getDepth() {
+        return queue.size();
+    }
+
+    /**
+     * Return how long a rejected caller should wait before trying again,
+     * or zero if a pour would currently be admitted.
+     */
+    public synchronized long getRetryAfterMs() {
+        Ticket head = queue.peekFirst();
+        if ((head == null) || (queue.size() <= maxWaiting)) {
+            return 0;
+        }
+        long now = clock.nanoTime();
+        long startNs = head.started ? head.startNs : now;
+        return Math.max(MIN_RETRY_MS, (startNs - now) / 1_000_000 + head.durationMs);
+    }
+
+    public long getAdmitted() {
+        return admitted.get();
+    }
+
+    public long getShedBusy() {
+        return shedBusy.get();
+    }
+
+    public long getShedDuplicate() {
+        return shedDuplicate.get();
+    }
+
+    /**
+     * Return a snapshot of the queue and shed counts for the UI.
+     */
+    public AdmissionStatus getStatus() {
+        AdmissionStatus status = new AdmissionStatus();
+        status.setDepth(getDepth());
+        status.setMaxWaiting(maxWaiting);
+        status.setRetryAfterMs(getRetryAfterMs());
+        status.setAdmitted(admitted.get());
+        status.setShedBusy(shedBusy.get());
+        status.setShedDuplicate(shedDuplicate.get());
+        return status;
+    }
+
+    /**
+     * Register the queue depth and shed counts.
+     */
+    public void registerMetrics(MetricsRegistry metrics) {
+        metrics.gauge("zero4_pour_queue_depth", "Pours admitted to the nozzle, including the one pouring", null, this::getDepth);
+        metrics.gauge("zero4_pour_retry_after_ms", "Retry hint for pours rejected as busy", null, this::getRetryAfterMs);
+        metrics.counter("zero4_pours_admitted", "Pours admitted to the nozzle", null, admitted::get);
+        metrics.counter("zero4_pours_expired", "Pours released after never completing", null, expired::get);
+        metrics.counter("zero4_pours_shed", "Pours rejected by admission control", "reason=\"busy\"", shedBusy::get);
+        metrics.counter("zero4_pours_shed", "Pours rejected by admission control", "reason=\"duplicate\"", shedDuplicate::get);
+    }
+
+    /**
+     * Admission of a pour, rejected if the reason is set. The state is
+     * guarded by the admission.
+     */
+    public static class Ticket {
+        @Getter
+        private final String requestId; // client id of the pour, null if none
+        @Getter
+        private final String key;       // beverage and volume of the pour
+        @Getter
+        private final String reason;    // rejection reason, null if admitted
+        @Getter
+        private final long retryAfterMs; // when a rejected pour may be retried, 0 if it shouldn't be
+        private long admitNs;           // when the pour was admitted
+        private long durationMs;        // expected duration of the pour once started
+        private long headNs;            // when the pour reached the head of the queue
+        private boolean started;        // true once the pour started
+        private long startNs;           // when the pour started
+        private Runnable onTurn;        // callback waiting for the head of the queue
+
+        private Ticket(String requestId, String key, String reason, long retryAfterMs) {
+            this.requestId = requestId;
+            this.key = key;
+            this.reason = reason;
+            this.retryAfterMs = retryAfterMs;
+        }
+
+        private void start(long nowNs) {
+            started = true;
+            startNs = nowNs;
+        }
+
+        public boolean isAdmitted() {
+            return reason == null;
+        }
+    }
+}
@@ -0,0 +1,54 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.pour;
+
+import com.kondra.kos.zero4.Zero4App;
+import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiController;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint;
+import com.kosdev.kos.commons.core.dispatcher.annotations.RequestBody;
+import com.kosdev.kos.commons.util.KosUtil;
+import com.kosdev.kos.ext.dispense.pipeline.beverage.Pourable;
+
+/**
+ * Controller the UI calls as beverages are highlighted, so the pour engine
+ * can arm the pour before the pour button is pressed. It also reports the
+ * admission state of the nozzle, so a UI whose pour was rejected as busy
+ * knows when to retry.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@ApiController(base = "/pour",
+        title = "Pour service",
+        desc = "Arm pours of the selected beverage ahead of the pour and report nozzle admission.")
+public class PourController {
+    @Autowired
+    private Zero4App app;
+
+    @ApiEndpoint(POST = "/select",
+            desc = "Arm a pour of the selected beverage and volume. Returns false if the beverage can't be poured.")
+    public boolean select(@RequestBody SelectRequest request) throws Exception {
+        BevPourable.BevDef def = new BevPourable.BevDef();
+        def.setBevId(request.getBevId());
+        def.setNozzle(request.getNozzle());
+
+        Zero4PourEngine engine = app.getAssembly().getPourEngine();
+        Pourable pourable = engine.getPourable(KosUtil.getMapper().writeValueAsString(def));
+        pourable.setVolume(request.getVolume());
+        return engine.select(pourable);
+    }
+
+    @ApiEndpoint(POST = "/deselect",
+            desc = "Drop the armed pour of the nozzle in the request, such as when the UI leaves the beverage. Only the nozzle of the request is used.")
+    public void deselect(@RequestBody SelectRequest request) {
+        app.getAssembly().getPourEngine().disarm(request.getNozzle());
+    }
+
+    @ApiEndpoint(GET = "/admission",
+            desc = "Return the pours queued on the nozzle, shed counts and retry hint.")
+    public AdmissionStatus getAdmission() {
+        return app.getAssembly().getPourEngine().getAdmission().getStatus();
+    }
+}
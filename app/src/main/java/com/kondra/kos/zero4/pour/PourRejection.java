@@ -0,0 +1,21 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.pour;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Reason data of a pour rejected by admission control, returned with the
+ * failed pour so the UI knows when to retry without polling the admission.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter
+@AllArgsConstructor
+public class PourRejection {
+    private String requestId;      // client id of the rejected pour, null if none
+    private long retryAfterMs;     // when the pour may be retried, 0 if it shouldn't be
+}
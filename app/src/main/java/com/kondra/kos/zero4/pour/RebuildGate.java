@@ -0,0 +1,63 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.pour;
+
+/**
+ * Coalesces beverage graph rebuilds while ingredient batches are applied.
+ * <p>
+ * kOS rebuilds the beverage graph and recomputes availability for every
+ * holder change. While a batch is open, the pour engine suspends these
+ * rebuilds, only adding the ingredient nodes. When the last open batch
+ * closes, a single rebuild is due if any rebuild was suspended, so applying
+ * a batch of any size costs one full rebuild instead of one per assignment.
+ * Batches may overlap, in which case the rebuild waits for the last of them.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+class RebuildGate {
+    private int open;           // batches being applied
+    private boolean pending;    // a rebuild was suspended since the first batch opened
+    private long suspended;     // rebuilds suspended
+
+    /**
+     * Open a batch, suspending rebuilds until it's closed.
+     */
+    synchronized void open() {
+        open++;
+    }
+
+    /**
+     * Return true if a rebuild has to be suspended because a batch is open,
+     * recording that a rebuild is due once the batches close.
+     */
+    synchronized boolean suspend() {
+        if (open == 0) {
+            return false;
+        }
+        pending = true;
+        suspended++;
+        return true;
+    }
+
+    /**
+     * Close a batch, returning true if it was the last open batch and a
+     * rebuild was suspended while batches were open.
+     */
+    synchronized boolean close() {
+        if (open == 0) {
+            throw new IllegalStateException("no open batch");
+        }
+        if (--open > 0) {
+            return false;
+        }
+        boolean due = pending;
+        pending = false;
+        return due;
+    }
+
+    synchronized long getSuspended() {
+        return suspended;
+    }
+}
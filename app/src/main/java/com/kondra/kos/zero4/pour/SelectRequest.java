@@ -0,0 +1,20 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.pour;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Beverage and volume highlighted in the UI, used to arm a pour.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class SelectRequest {
+    private String nozzle = Zero4PourEngine.NOZZLE; // nozzle the beverage is selected on
+    private String bevId;      // selected beverage id
+    private double volume;     // volume that will be poured
+}
@@ -3,13 +3,30 @@
  */
 package com.kondra.kos.zero4.pour;
 
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
 import com.kondra.kos.zero4.Zero4App;
 import com.kondra.kos.zero4.brandset.Beverage;
 import com.kondra.kos.zero4.brandset.Brandset;
 import com.kondra.kos.zero4.brandset.RecipePart;
+import com.kondra.kos.zero4.brandset.RegionMenu;
+import com.kondra.kos.zero4.clock.PourClock;
+import com.kondra.kos.zero4.clock.SystemClock;
+import com.kondra.kos.zero4.hardware.Zero4Board;
+import com.kondra.kos.zero4.hardware.pumps.BasePump;
+import com.kondra.kos.zero4.jfr.GraphRebuildEvent;
+import com.kondra.kos.zero4.jfr.PourEvent;
+import com.kondra.kos.zero4.loadtest.TrafficCapture;
+import com.kondra.kos.zero4.maintenance.MaintenanceScheduler;
+import com.kondra.kos.zero4.metrics.Counter;
+import com.kondra.kos.zero4.metrics.MetricsRegistry;
 import com.kondra.kos.zero4.pour.BevPourable.BevDef;
 import com.kosdev.kos.commons.core.context.annotations.Autowired;
 import com.kosdev.kos.commons.util.concurrent.future.FailedFuture;
+import com.kosdev.kos.commons.util.concurrent.future.FutureEvent;
 import com.kosdev.kos.commons.util.concurrent.future.FutureWork;
 import com.kosdev.kos.commons.util.concurrent.future.ParallelFuture;
 import com.kosdev.kos.commons.util.concurrent.future.SequencedFuture;
@@ -21,6 +38,10 @@ import com.kosdev.kos.ext.dispense.pipeline.beverage.RecipeExtractor;
 import com.kosdev.kos.ext.dispense.pipeline.beverage.graph.BevGraphBuilder;
 import com.kosdev.kos.ext.dispense.pipeline.beverage.graph.BeverageNode;
 
+import jdk.jfr.EventType;
+import lombok.Getter;
+import lombok.Setter;
+
 /**
  * Pour engine for the Zero4 demo dispenser.
  * <p>
@@ -42,11 +63,47 @@ import com.kosdev.kos.ext.dispense.pipeline.beverage.graph.BeverageNode;
  * @version 2025-03-13
  */
 public class Zero4PourEngine extends BeveragePourEngine<BeveragePourEngineConfig> {
+    public static final String NOZZLE = "nozzle";  // name of the only nozzle, the default for pours
+    private static final EventType GRAPH_REBUILD = EventType.getEventType(GraphRebuildEvent.class);
+    private static final EventType POUR = EventType.getEventType(PourEvent.class);
+
     @Autowired
     private Zero4App app; // access to the brandset
+    private final Counter pours = new Counter();            // pours built
+    private final Counter poursUnavailable = new Counter(); // pours rejected as unavailable
+    @Getter
+    private final Counter graphRebuilds = new Counter();    // beverage graph rebuilds
+    private final Counter poursArmed = new Counter();       // pours that used an armed plan
+    @Getter
+    private final Counter graphRebuildsSuspended = new Counter(); // graph rebuilds suspended by a batch
+    @Getter
+    private final Counter graphBeverages = new Counter();   // beverage nodes added by graph rebuilds
+    private final RebuildGate rebuildGate = new RebuildGate(); // coalesces rebuilds while batches are applied
+    private final AtomicInteger pourIds = new AtomicInteger(); // ids of captured pours
+    private final AtomicInteger graphVersion = new AtomicInteger(); // incremented on each graph rebuild
+    private final Map<String, ArmedPour> armed = new ConcurrentHashMap<>(); // plan of the selected beverage by nozzle
+    private final Object stageLock = new Object();   // guards the staging state below, never held during board io
+    private ArmedPour staged;                        // plan last sent to be staged on the board
+    private ArmedPour acked;                         // plan the board acknowledged staging
+    private long stageTickets;                       // staging operations issued
+    private long stageServed;                        // staging operations done with the board
+    @Getter
+    private final PourAdmission admission = new PourAdmission(SystemClock.INSTANCE); // queues the pours of the nozzle
+    @Getter @Setter
+    private volatile boolean prepareOnSelect;        // stage armed pours on adapters that support it
+    @Getter @Setter
+    private volatile long armTtlMs = 10000;          // how long an armed pour is held
 
     @Override
     public void start() {
+        MetricsRegistry metrics = app.getMetrics();
+        metrics.counter("zero4_pours", "Beverage pours built by the pour engine", pours);
+        metrics.counter("zero4_pours_unavailable", "Beverage pours rejected as unavailable", poursUnavailable);
+        metrics.counter("zero4_graph_rebuilds", "Beverage graph rebuilds", graphRebuilds);
+        metrics.counter("zero4_pours_armed", "Beverage pours started from an armed plan", poursArmed);
+        admission.registerMetrics(metrics);
+        metrics.counter("zero4_graph_rebuilds_suspended", "Beverage graph rebuilds suspended while a batch was applied", graphRebuildsSuspended);
+        metrics.counter("zero4_graph_beverages", "Beverage nodes added by beverage graph rebuilds", graphBeverages);
     }
 
     @Override
@@ -58,26 +115,57 @@ public class Zero4PourEngine extends BeveragePourEngine<BeveragePourEngineConfig
      * beverage graph change. For example, assigning an ingredient to a pump
      * makes the new ingredient available to pour, thus the graph is rebuilt
      * to include the new ingredient.
+     * <p>
+     * While an {@code IngredientBatch} is being applied, rebuilds are suspended:
+     * only the ingredient nodes are added, so no beverage can be poured from a
+     * partially applied batch, and the graph is rebuilt once in full when the
+     * batch is done. See {@code suspendRebuilds()}.
      */
     @Override
     public void rebuildGraph(BevGraphBuilder builder) {
+        GraphRebuildEvent event = GRAPH_REBUILD.isEnabled() ? new GraphRebuildEvent() : null;
+        if (event != null) {
+            event.begin();
+        }
+
         // Add ingredient nodes for all the pumps. This is a convenience
         // method to build the first couple layers of the beverage graph
         builder.addIngredientNodes();
+        graphVersion.incrementAndGet();
+        graphRebuilds.inc();
+
+        // Leave the beverages out while a batch is applied, they're added by the
+        // rebuild that runs once the batch is done
+        boolean suspended = rebuildGate.suspend();
+        if (suspended) {
+            graphRebuildsSuspended.inc();
+        }
 
         // Get the brandset from the app
         Brandset brandset = app.getBrandset();
 
-        // Incorporate all the beverages from the brandset into the graph
-        for (Beverage bev : brandset.getBeverages()) {
-            // Add the beverage node to the graph
-            builder.addBeverage(new BeverageNode(bev.getId()).setNote(bev.getName()));
+        // Incorporate all the beverages from the brandset into the graph, unless suspended
+        int added = 0;
+        if (!suspended) {
+            for (Beverage bev : brandset.getBeverages()) {
+                // Add the beverage node to the graph
+                builder.addBeverage(new BeverageNode(bev.getId()).setNote(bev.getName()));
+                added++;
 
-            // Link the beverage node to ingredient nodes using the recipe data
-            for (RecipePart part : bev.getRecipe()) {
-                builder.addDependency(bev.getId(), part.getIngredientId());
+                // Link the beverage node to ingredient nodes using the recipe data
+                for (RecipePart part : bev.getRecipe()) {
+                    builder.addDependency(bev.getId(), part.getIngredientId());
+                }
             }
         }
+
+        graphBeverages.add(added);
+
+        if ((event != null) && event.shouldCommit()) {
+            event.beverages = added;
+            event.suspended = suspended;
+            event.commit();
+        }
     }
 
     /**
@@ -100,8 +188,17 @@ public class Zero4PourEngine extends BeveragePourEngine<BeveragePourEngineConfig
         // Grab the beverage definition from the pourable
         BevDef def = ((BevPourable) pourable).getBevDef();
 
-        // Pourable if the beverage node is available
-        return isAvailable(def.getBevId());
+        // Pourable if the beverage node is available and it's offered in the active region
+        return isOffered(def.getBevId()) && isAvailable(def.getBevId());
+    }
+
+    /**
+     * Return true if the beverage is on the menu of the active region. If no
+     * region is active, every beverage in the brandset is offered.
+     */
+    private boolean isOffered(String bevId) {
+        RegionMenu menu = app.getActiveMenu();
+        return (menu == null) || (menu.getBeverage(bevId) != null);
     }
 
     /**
@@ -111,40 +208,343 @@ public class Zero4PourEngine extends BeveragePourEngine<BeveragePourEngineConfig
     protected FutureWork buildFuture(BeveragePourSequence seq, Pourable pourable) {
         // Grab the beverage definition from the pourable
         BevDef def = ((BevPourable)pourable).getBevDef();
+        PourClock clock = ((BevPourable)pourable).getClock();
+        PourEvent buildEvent = POUR.isEnabled() ? new PourEvent() : null;
+        if (buildEvent != null) {
+            buildEvent.begin();
+        }
+        double volume = pourable.getEffectiveVolume();
 
-        // Create recipe extractor to extract the pumps to use for the specified beverage.
-        // This performs a downward search in the beverage graph to find available pumps
-        // to pour the specified beverage.
-        RecipeExtractor extractor = new RecipeExtractor(this).addIngredients(def.getBevId());
-
-        // If the extractor didn't find a way to pour, return an error
-        if (!extractor.isValid()) {
-            return new FailedFuture("bev-pour", "errUnavailable");
+        // Admit the pour to the nozzle before doing any work for it, rejecting it straight
+        // away if it duplicates an admitted pour or the wait queue is full. The rejection
+        // carries the retry hint so the UI doesn't have to ask for it.
+        PourAdmission.Ticket ticket = admission.admit(def.getRequestId(), PourAdmission.key(def.getBevId(), volume));
+        if (!ticket.isAdmitted()) {
+            commit(buildEvent, ticket.getReason(), "build", def, pourable);
+            return new FailedFuture("bev-pour", ticket.getReason(),
+                    new PourRejection(ticket.getRequestId(), ticket.getRetryAfterMs()));
         }
 
-        // Get the beverage from the brandset
-        Beverage bev = app.getBrandset().getBeverage(def.getBevId());
+        // Record the arrival for traffic replay, including pours that turn out unavailable
+        TrafficCapture capture = app.getTrafficCapture();
+        int captureId = pourIds.incrementAndGet();
+        capture.pour(captureId, def.getBevId(), volume);
 
-        // Compute duration of pour from volume
-        int durationMs = (int)((pourable.getEffectiveVolume() / bev.getRate()) * 1000);
+        // Use the plan armed when the beverage was selected if it's still valid,
+        // otherwise resolve the pumps and plan the pour now
+        ArmedPour armedPlan = takeArmed(def.getNozzle(), def.getBevId(), volume);
+        ArmedPour plan = (armedPlan != null) ? armedPlan : plan(def.getBevId(), volume);
+
+        // If there's no way to pour, return an error
+        if (plan == null) {
+            admission.release(ticket);
+            poursUnavailable.inc();
+            commit(buildEvent, "errUnavailable", "build", def, pourable);
+            return new FailedFuture("bev-pour", "errUnavailable");
+        }
+        admission.setDuration(ticket, plan.getMaxDurationMs());
+        pours.inc();
+        if (armedPlan != null) {
+            poursArmed.inc();
+        }
 
         // sequenced future for the pour
         SequencedFuture seqFuture = new SequencedFuture("pour");
 
-        // first step is to mark all the pumps as started
+        // JFR event for the pour phase, which begins when the pumps are started
+        PourEvent pourEvent = POUR.isEnabled() ? new PourEvent() : null;
+
+        // Let the maintenance scheduler know when a beverage is pouring so it can preempt
+        // any running maintenance intent and learn the traffic pattern
+        MaintenanceScheduler maintenance = app.getAssembly().getMaintenance();
+        AtomicBoolean pouring = new AtomicBoolean();
+        seqFuture.append("admission", FutureEvent.COMPLETE, f -> admission.release(ticket));
+        seqFuture.append("maintenance", FutureEvent.COMPLETE, f -> {
+            if (pouring.get()) {
+                maintenance.pourEnded();
+            }
+        });
+
+        // first step is to wait in the queue until the pours ahead on the nozzle have ended
+        seqFuture.add(new FutureWork("queue", f -> admission.awaitTurn(ticket, f::success)));
+
+        // then mark all the pumps as started, and if the plan was staged
+        // on the board, start all of its pumps with one fire frame
+        AtomicInteger fired = new AtomicInteger();
         seqFuture.add(new FutureWork("startPumps", f -> {
-            startPumps(extractor.getPumps(), pourable);
+            maintenance.pourStarted();
+            pouring.set(true);
+            if (pourEvent != null) {
+                pourEvent.begin();
+            }
+            startPumps(plan.getExtractor().getPumps(), pourable);
+            fired.set(fire(plan));
             f.success();
         }));
 
-        // Parallel future to run all the pumps concurrently
+        // Parallel future to run all the pumps concurrently. The pumps share a stop
+        // group so that a cancel stops all of them with a single frame to the board.
+        // Pumps that weren't started by the fire frame are started individually.
+        AtomicInteger stopGroup = new AtomicInteger();
         ParallelFuture pourFuture = new ParallelFuture("bev-pour");
-        for (RecipePart part : bev.getRecipe()) {
-            pourFuture.add(extractor.getPumpForIngredient(part.getIngredientId()).tpour(durationMs, part.getRate()));
+        for (int i = 0; i < plan.getParts(); i++) {
+            pourFuture.add(plan.getPump(i).tpour(plan.getDuration(i), plan.getRate(i), plan.getVolume(i), stopGroup, fired, clock));
         }
         seqFuture.add(pourFuture);
 
+        seqFuture.append("capture", FutureEvent.CANCEL, f -> capture.cancel(captureId));
+
+        // Record the pour phase from starting the pumps until the pour completes
+        if (pourEvent != null) {
+            pourEvent.outcome = "fail";
+            seqFuture.append("jfr-success", FutureEvent.SUCCESS, f -> pourEvent.outcome = "success");
+            seqFuture.append("jfr-cancel", FutureEvent.CANCEL, f -> pourEvent.outcome = "cancel");
+            seqFuture.append("jfr", FutureEvent.COMPLETE, f -> {
+                if (pouring.get()) {
+                    commit(pourEvent, pourEvent.outcome, "pour", def, pourable);
+                }
+            });
+        }
+        commit(buildEvent, "success", "build", def, pourable);
+
         // Return the future for the pour
         return seqFuture;
     }
+
+    /**
+     * Suspend graph rebuilds while a batch of holder assignments is applied.
+     * Every holder change still makes kOS call {@code rebuildGraph()}, but
+     * the suspended rebuilds only add the ingredient nodes. Each call must be
+     * paired with {@code resumeRebuilds()}.
+     */
+    public void suspendRebuilds() {
+        rebuildGate.open();
+    }
+
+    /**
+     * End a batch started by {@code suspendRebuilds()}. Once no batch is being
+     * applied, if any rebuild was suspended, kOS is asked to rebuild the graph,
+     * which recomputes availability, so the whole batch costs one rebuild.
+     */
+    public void resumeRebuilds() {
+        if (rebuildGate.close()) {
+            rebuildGraph();
+        }
+    }
+
+    /**
+     * Arm a pour of the pourable when its beverage is selected, so a later
+     * pour of the same beverage and volume skips resolving and planning the
+     * pour. Each nozzle has its own armed pour. If enabled and the adapter
+     * supports it, the plan is also staged on the board so the pumps can be
+     * started with a single frame. The board holds one staged pour for all
+     * nozzles, so staging a plan replaces the staging of any other plan.
+     * Selecting replaces the armed pour of the nozzle, and an armed pour
+     * that isn't poured expires after {@code armTtlMs}. Returns false if the
+     * beverage can't currently be poured.
+     * <p>
+     * Staging, firing and clearing on the board must reach it in the order
+     * they're decided, or a fire frame could start the pumps with the rates of
+     * another plan. Each one takes a ticket under {@code stageLock} and does
+     * its board io outside the lock once its turn comes, so deciding never
+     * waits on the board.
+     */
+    public boolean select(Pourable pourable) {
+        BevDef def = ((BevPourable)pourable).getBevDef();
+        ArmedPour plan = plan(def.getBevId(), pourable.getEffectiveVolume());
+        if (plan == null) {
+            disarm(def.getNozzle());
+            return false;
+        }
+
+        // The plan only counts as staged once the adapter acknowledged it
+        Zero4Board board = app.getAssembly().getZero4();
+        if (prepareOnSelect && board.canPrepare()) {
+            long ticket;
+            synchronized (stageLock) {
+                staged = plan;
+                ticket = stageTickets++;
+            }
+            boolean ok = false;
+            awaitStageTurn(ticket);
+            try {
+                ok = plan.prepare(board);
+            } finally {
+                endStageTurn(ok ? plan : null);
+            }
+        }
+
+        // A replaced plan is never poured
+        ArmedPour replaced = armed.put(def.getNozzle(), plan);
+        if (replaced != null) {
+            release(replaced);
+        }
+        ((BevPourable)pourable).getClock().schedule(() -> {
+            if (armed.remove(def.getNozzle(), plan)) {
+                release(plan);
+            }
+        }, armTtlMs);
+        return true;
+    }
+
+    /**
+     * Drop the armed pour of the nozzle, if any, such as when the beverage
+     * is deselected.
+     */
+    public void disarm(String nozzle) {
+        ArmedPour plan = armed.remove(nozzle);
+        if (plan != null) {
+            release(plan);
+        }
+    }
+
+    /**
+     * Return the armed pour of the nozzle if it matches the beverage and volume
+     * and the graph hasn't changed since it was armed, otherwise drop it and
+     * return null.
+     */
+    private ArmedPour takeArmed(String nozzle, String bevId, double volume) {
+        ArmedPour plan = armed.remove(nozzle);
+        if (plan == null) {
+            return null;
+        }
+        if (plan.matches(bevId, volume) && (plan.getGraphVersion() == graphVersion.get()) && isOffered(bevId) && isAvailable(bevId)) {
+            return plan;
+        }
+        release(plan);
+        return null;
+    }
+
+    /**
+     * Start the pumps of the plan with a single fire frame if the plan is
+     * the one staged on the board, returning the mask of pumps started.
+     */
+    private int fire(ArmedPour plan) {
+        long ticket;
+        synchronized (stageLock) {
+            if (staged != plan) {
+                return 0;
+            }
+            staged = null;
+            ticket = stageTickets++;
+        }
+        awaitStageTurn(ticket);
+        try {
+            // the staging was sent before this ticket was taken, so it has been answered by now
+            return isAcked(plan) ? app.getAssembly().getZero4().firePrepared(plan.getMask()) : 0;
+        } finally {
+            endStageTurn(null);
+        }
+    }
+
+    /**
+     * Drop a plan that won't be poured by clearing its staging from the board.
+     */
+    private void release(ArmedPour plan) {
+        long ticket;
+        synchronized (stageLock) {
+            if (staged != plan) {
+                return;
+            }
+            staged = null;
+            ticket = stageTickets++;
+        }
+        awaitStageTurn(ticket);
+        try {
+            if (isAcked(plan)) {
+                app.getAssembly().getZero4().clearPrepared();
+            }
+        } finally {
+            endStageTurn(null);
+        }
+    }
+
+    private boolean isAcked(ArmedPour plan) {
+        synchronized (stageLock) {
+            return acked == plan;
+        }
+    }
+
+    /**
+     * Wait until every staging operation with an earlier ticket is done with
+     * the board. The lock is released while waiting.
+     */
+    private void awaitStageTurn(long ticket) {
+        boolean interrupted = false;
+        synchronized (stageLock) {
+            while (stageServed != ticket) {
+                try {
+                    stageLock.wait();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * End the turn of the current staging operation, recording the plan the
+     * board now holds staged, and let the next ticket proceed.
+     */
+    private void endStageTurn(ArmedPour nowAcked) {
+        synchronized (stageLock) {
+            acked = nowAcked;
+            stageServed++;
+            stageLock.notifyAll();
+        }
+    }
+
+    /**
+     * Resolve the pumps for the beverage and plan the volume, rate and duration
+     * of each recipe part. Returns null if the beverage can't be poured.
+     */
+    private ArmedPour plan(String bevId, double volume) {
+        // Beverages that aren't offered in the active region can't be poured, even
+        // though they're in the beverage graph
+        if (!isOffered(bevId)) {
+            return null;
+        }
+
+        // Create recipe extractor to extract the pumps to use for the specified beverage.
+        // This performs a downward search in the beverage graph to find available pumps
+        // to pour the specified beverage.
+        int version = graphVersion.get();
+        RecipeExtractor extractor = new RecipeExtractor(this).addIngredients(bevId);
+        if (!extractor.isValid()) {
+            return null;
+        }
+
+        // Each part pours its share of the volume based on its rate relative to the
+        // combined rate of the recipe. Each pump then plans its own duration from
+        // its volume and rate, so rounding and start latency are handled per pump.
+        Beverage bev = app.getBrandset().getBeverage(bevId);
+        double totalRate = 0;
+        for (RecipePart part : bev.getRecipe()) {
+            totalRate += part.getRate();
+        }
+        ArmedPour plan = new ArmedPour(bevId, volume, extractor, version, bev.getRecipe().size());
+        int idx = 0;
+        for (RecipePart part : bev.getRecipe()) {
+            BasePump pump = (BasePump)extractor.getPumpForIngredient(part.getIngredientId());
+            plan.setPart(idx++, pump, volume * part.getRate() / totalRate, part.getRate());
+        }
+        return plan;
+    }
+
+    /**
+     * Commit a pour phase JFR event if it's enabled and over the threshold.
+     * The event is null when the event type isn't enabled.
+     */
+    private static void commit(PourEvent event, String outcome, String phase, BevDef def, Pourable pourable) {
+        if ((event != null) && event.shouldCommit()) {
+            event.outcome = outcome;
+            event.phase = phase;
+            event.bevId = def.getBevId();
+            event.volume = pourable.getEffectiveVolume();
+            event.commit();
+        }
+    }
 }
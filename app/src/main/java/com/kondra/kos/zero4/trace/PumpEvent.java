@@ -0,0 +1,29 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.trace;
+
+import lombok.AllArgsConstructor;
+import lombok.Getter;
+
+/**
+ * Decoded pump event read from a {@code PumpEventRecorder}. These are only
+ * created when reading the buffer, never on the pour path.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter
+@AllArgsConstructor
+public class PumpEvent {
+    private long seq;          // sequence number of the event
+    private long timeNs;       // System.nanoTime() of the event
+    private String type;       // type of event
+    private int pos;           // pump position, -1 if not pump specific
+    private long arg;          // event argument, such as duration or pump mask
+
+    @Override
+    public String toString() {
+        return seq + " " + timeNs + " " + type + " pos=" + pos + " arg=" + arg;
+    }
+}
@@ -0,0 +1,192 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.trace;
+
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+import com.kosdev.kos.commons.util.KosUtil;
+
+import lombok.Getter;
+import lombok.Setter;
+import lombok.extern.slf4j.Slf4j;
+
+/**
+ * Structured recorder of pump events.
+ * <p>
+ * Logging from the pour path formats strings and takes logger locks on the
+ * pour thread. This recorder instead writes fixed size events into a ring
+ * buffer that is allocated up front, using a single atomic increment to claim
+ * a slot, so recording is lock free and doesn't allocate. Each slot is guarded
+ * like a seqlock: the writer invalidates the slot before writing the payload
+ * and publishes the sequence number after, and a reader only accepts the
+ * payload if it saw the same sequence number before and after reading it.
+ * A background task periodically flushes new events to the debug log, and
+ * {@code dump()} writes the entire buffer to the log when something goes
+ * wrong so the events leading up to the problem are available.
+ * <p>
+ * Since high volume events are rarely interesting individually, start and stop
+ * events can be sampled. Cancels and trouble events are always recorded, and
+ * pump and board faults raised through kOS also dump the buffer.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Slf4j
+public class PumpEventRecorder {
+    // event types
+    public static final int START  = 1;
+    public static final int CANCEL = 2;
+    public static final int STOP   = 3;
+    public static final int RESYNC = 4;
+    public static final int ERROR  = 5;
+    public static final int TROUBLE = 6;
+    private static final String[] TYPE_NAMES = { "?", "start", "cancel", "stop", "resync", "error", "trouble" };
+
+    // published value of a slot that is being written
+    private static final long WRITING = -1;
+
+    // longs per event: time, type/pos, arg
+    private static final int WIDTH = 3;
+
+    private final int mask;                  // capacity - 1
+    private final long[] data;               // event payloads
+    private final AtomicLongArray published; // sequence number published in each slot
+    private final AtomicLong next = new AtomicLong();    // next sequence to claim
+    private final AtomicLong sampled = new AtomicLong(); // counter for sampled events
+    private final AtomicBoolean flushing = new AtomicBoolean(); // true while the flush task is scheduled
+    private long flushed;                    // last sequence flushed to the log
+    @Getter @Setter
+    private volatile int sampleEvery = 1;    // record 1 in n sampled events
+    @Getter
+    private volatile int flushMs = 1000;     // how often to flush to the log, 0 to disable
+
+    /**
+     * Create a recorder that holds the most recent events.
+     *
+     * @param capacity number of events to hold, rounded up to a power of two
+     */
+    public PumpEventRecorder(int capacity) {
+        int size = Integer.highestOneBit(Math.max(2, capacity - 1)) << 1;
+        mask = size - 1;
+        data = new long[size * WIDTH];
+        published = new AtomicLongArray(size);
+        for (int i = 0; i < size; i++) {
+            published.set(i, WRITING);
+        }
+    }
+
+    /**
+     * Start the background flush task if flushing is enabled and the task
+     * isn't already scheduled.
+     */
+    public void start() {
+        if ((flushMs > 0) && flushing.compareAndSet(false, true)) {
+            KosUtil.scheduleCallback(this::flushTask, Math.max(flushMs, 100));
+        }
+    }
+
+    /**
+     * Set how often new events are flushed to the log, where 0 stops flushing.
+     * Setting a non-zero interval restarts flushing if it was stopped.
+     */
+    public void setFlushMs(int flushMs) {
+        this.flushMs = flushMs;
+        start();
+    }
+
+    /**
+     * Record an event that is subject to sampling.
+     */
+    public void sample(int type, int pos, long arg) {
+        int n = sampleEvery;
+        if (n <= 1 || sampled.getAndIncrement() % n == 0) {
+            record(type, pos, arg);
+        }
+    }
+
+    /**
+     * Record an event unconditionally.
+     */
+    public void record(int type, int pos, long arg) {
+        long seq = next.getAndIncrement();
+        int slot = (int)(seq & mask);
+        int base = slot * WIDTH;
+
+        // Invalidate the slot before touching the payload so a reader can't see
+        // the previous sequence number around a partially written payload
+        published.set(slot, WRITING);
+        VarHandle.storeStoreFence();
+        data[base] = System.nanoTime();
+        data[base + 1] = ((long)type << 32) | (pos & 0xffffffffL);
+        data[base + 2] = arg;
+        published.setRelease(slot, seq);
+    }
+
+    /**
+     * Return a snapshot of the events currently in the buffer, oldest first.
+     */
+    public List<PumpEvent> getEvents() {
+        long end = next.get();
+        return read(Math.max(0, end - mask - 1), end);
+    }
+
+    /**
+     * Write the entire buffer to the log. Called when something goes wrong
+     * so the events leading up to the problem are captured.
+     */
+    public void dump(String reason) {
+        List<PumpEvent> events = getEvents();
+        log.warn("pump trace dump ({}): {} events", reason, events.size());
+        for (PumpEvent e : events) {
+            log.warn("  {}", e);
+        }
+    }
+
+    /**
+     * Flush events recorded since the last flush to the debug log and
+     * reschedule unless flushing was disabled.
+     */
+    private void flushTask() {
+        try {
+            long end = next.get();
+            if (log.isDebugEnabled()) {
+                for (PumpEvent e : read(Math.max(flushed, end - mask - 1), end)) {
+                    log.debug("{}", e);
+                }
+            }
+            flushed = end;
+        } finally {
+            flushing.set(false);
+            start();
+        }
+    }
+
+    /**
+     * Read the events in the sequence range, skipping slots that are not yet
+     * published or were overwritten while reading.
+     */
+    private List<PumpEvent> read(long from, long to) {
+        List<PumpEvent> events = new ArrayList<>((int)(to - from));
+        for (long seq = from; seq < to; seq++) {
+            int slot = (int)(seq & mask);
+            int base = slot * WIDTH;
+            if (published.get(slot) != seq) {
+                continue;
+            }
+            long time = data[base];
+            long typePos = data[base + 1];
+            long arg = data[base + 2];
+            VarHandle.loadLoadFence();
+            if (published.get(slot) == seq) {
+                events.add(new PumpEvent(seq, time, TYPE_NAMES[(int)(typePos >>> 32)], (int)typePos, arg));
+            }
+        }
+        return events;
+    }
+}
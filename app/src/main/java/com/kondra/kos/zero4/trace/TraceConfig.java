@@ -0,0 +1,19 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.trace;
+
+import lombok.Getter;
+import lombok.Setter;
+
+/**
+ * Runtime settings for the pump event recorder.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@Getter @Setter
+public class TraceConfig {
+    private int sampleEvery = 1;   // record 1 in n start / stop events
+    private int flushMs = 1000;    // how often to flush events to the debug log
+}
@@ -0,0 +1,46 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.trace;
+
+import java.util.List;
+
+import com.kondra.kos.zero4.Zero4App;
+import com.kosdev.kos.commons.core.context.annotations.Autowired;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiController;
+import com.kosdev.kos.commons.core.dispatcher.annotations.ApiEndpoint;
+import com.kosdev.kos.commons.core.dispatcher.annotations.RequestBody;
+
+/**
+ * Controller to read and configure the pump event trace.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+@ApiController(base = "/trace",
+        title = "Trace service",
+        desc = "Pump event trace of the zero4 board.")
+public class TraceController {
+    @Autowired
+    private Zero4App app;
+
+    @ApiEndpoint(GET = "/events",
+            desc = "Return the pump events currently held in the trace buffer.")
+    public List<PumpEvent> getEvents() {
+        return app.getAssembly().getZero4().getTracer().getEvents();
+    }
+
+    @ApiEndpoint(POST = "/config",
+            desc = "Set the sampling and flush interval of the pump event trace.")
+    public void setConfig(@RequestBody TraceConfig config) {
+        PumpEventRecorder tracer = app.getAssembly().getZero4().getTracer();
+        tracer.setSampleEvery(config.getSampleEvery());
+        tracer.setFlushMs(config.getFlushMs());
+    }
+
+    @ApiEndpoint(GET = "/dump",
+            desc = "Write the pump event trace buffer to the log.")
+    public void dump() {
+        app.getAssembly().getZero4().getTracer().dump("requested");
+    }
+}
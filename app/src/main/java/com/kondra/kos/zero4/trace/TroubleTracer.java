@@ -0,0 +1,81 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.trace;
+
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+import com.kondra.kos.zero4.TestController;
+import com.kondra.kos.zero4.hardware.Zero4Board;
+import com.kondra.kos.zero4.hardware.pumps.BasePump;
+import com.kondra.kos.zero4.hardware.pumps.PumpDutyMonitor.PumpWearTrouble;
+import com.kosdev.kos.commons.core.service.trouble.Trouble;
+import com.kosdev.kos.commons.core.service.trouble.TroubleListener;
+import com.kosdev.kos.ext.dispense.Pump;
+import com.kosdev.kos.ext.dispense.PumpTrouble;
+
+/**
+ * Trouble listener that records every trouble raised through kOS in the
+ * pump event trace. Troubles that point at a fault of a pump or the board,
+ * including failed resyncs, also dump the trace so the pump events leading
+ * up to the trouble are in the log next to it. Test blocks and wear troubles
+ * are routine, so they're only recorded. Since a single fault can raise a
+ * trouble on every pump at once, dumps are limited to one per interval.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class TroubleTracer implements TroubleListener {
+    private static final long DUMP_INTERVAL_MS = 10_000;   // min time between dumps
+
+    private final Zero4Board board;
+    private final AtomicLong lastDumpMs = new AtomicLong(-DUMP_INTERVAL_MS); // time of the last dump
+    private final AtomicInteger suppressed = new AtomicInteger(); // dumps skipped since the last dump
+
+    public TroubleTracer(Zero4Board board) {
+        this.board = board;
+    }
+
+    @Override
+    public void onTroubleAdded(Trouble trouble) {
+        PumpEventRecorder tracer = board.getTracer();
+        int pos = -1;
+        for (Pump<?> pump : board.getMicros()) {
+            if (trouble.isImpacted(pump)) {
+                pos = ((BasePump)pump).getPos();
+            }
+        }
+        if (trouble.isImpacted(board.getWater())) {
+            pos = board.getWater().getPos();
+        } else if (trouble.isImpacted(board.getCarb())) {
+            pos = board.getCarb().getPos();
+        }
+        tracer.record(PumpEventRecorder.TROUBLE, pos, 0);
+
+        if (isFault(trouble)) {
+            long now = System.currentTimeMillis();
+            long last = lastDumpMs.get();
+            if ((now - last >= DUMP_INTERVAL_MS) && lastDumpMs.compareAndSet(last, now)) {
+                tracer.dump("trouble " + trouble.getClass().getSimpleName() + ", " + suppressed.getAndSet(0) + " dumps suppressed");
+            } else {
+                suppressed.incrementAndGet();
+            }
+        }
+    }
+
+    @Override
+    public void onTroubleRemoved(Trouble trouble) {
+    }
+
+    /**
+     * Return true if the trouble points at a fault of a pump or the board.
+     */
+    private boolean isFault(Trouble trouble) {
+        if ((trouble instanceof TestController.BlockTrouble) || (trouble instanceof PumpWearTrouble)) {
+            return false;
+        }
+        // pump troubles include the resync troubles raised by the board
+        return (trouble instanceof PumpTrouble) || trouble.isImpacted(board);
+    }
+}
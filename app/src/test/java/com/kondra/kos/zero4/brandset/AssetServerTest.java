@@ -0,0 +1,97 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.brandset;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.net.URL;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for content negotiation and etag validation of brandset assets.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class AssetServerTest {
+    private static final byte[] SVG = "<svg/>".getBytes(StandardCharsets.UTF_8);
+    private static final byte[] GZ = { 1, 2, 3 };
+    private static final byte[] BR = { 4, 5 };
+
+    private AssetServer server;
+
+    @BeforeEach
+    public void start() throws Exception {
+        server = new AssetServer(new InetSocketAddress("127.0.0.1", 0));
+        server.add("icons/lemon.svg", "abc", SVG, GZ, BR);
+        server.add("icons/lime.svg", "def", SVG, GZ, null);
+        server.start();
+    }
+
+    @AfterEach
+    public void stop() {
+        server.stop();
+    }
+
+    @Test
+    public void smallestAcceptedVariantIsServed() throws Exception {
+        HttpURLConnection conn = get("icons/lemon.svg", "gzip, br");
+        assertEquals(200, conn.getResponseCode());
+        assertEquals("br", conn.getHeaderField("Content-Encoding"));
+        assertEquals("\"abc-br\"", conn.getHeaderField("ETag"));
+        assertArrayEquals(BR, conn.getInputStream().readAllBytes());
+
+        conn = get("icons/lime.svg", "gzip, br");
+        assertEquals("gzip", conn.getHeaderField("Content-Encoding"));
+        assertArrayEquals(GZ, conn.getInputStream().readAllBytes());
+
+        conn = get("icons/lemon.svg", "br;q=0");
+        assertNull(conn.getHeaderField("Content-Encoding"));
+        assertEquals("\"abc\"", conn.getHeaderField("ETag"));
+        assertEquals("image/svg+xml", conn.getHeaderField("Content-Type"));
+        assertArrayEquals(SVG, conn.getInputStream().readAllBytes());
+    }
+
+    @Test
+    public void matchingEtagIsNotModified() throws Exception {
+        HttpURLConnection conn = get("icons/lemon.svg", "gzip");
+        conn.setRequestProperty("If-None-Match", "\"abc-gzip\"");
+        assertEquals(304, conn.getResponseCode());
+
+        conn = get("icons/lemon.svg", "gzip");
+        conn.setRequestProperty("If-None-Match", "\"abc\"");
+        assertEquals(200, conn.getResponseCode());
+    }
+
+    @Test
+    public void unknownAssetIsNotFound() throws Exception {
+        assertEquals(404, get("icons/missing.svg", null).getResponseCode());
+    }
+
+    @Test
+    public void acceptEncodingRespectsZeroQuality() {
+        assertTrue(AssetServer.accepts("gzip;q=0.5, br", "gzip"));
+        assertFalse(AssetServer.accepts("gzip;q=0", "gzip"));
+        assertFalse(AssetServer.accepts("deflate", "gzip"));
+        assertFalse(AssetServer.accepts(null, "gzip"));
+    }
+
+    private HttpURLConnection get(String path, String acceptEncoding) throws Exception {
+        HttpURLConnection conn = (HttpURLConnection)new URL(server.getBaseUrl() + path).openConnection();
+        if (acceptEncoding != null) {
+            conn.setRequestProperty("Accept-Encoding", acceptEncoding);
+        }
+        return conn;
+    }
+}
@@ -0,0 +1,62 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.loadtest;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the latency recorder used by load test reports.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class LatencyRecorderTest {
+
+    @Test
+    public void emptyRecorderHasNoSamples() {
+        LoadTestReport.Latency latency = new LatencyRecorder(10).summarize();
+        assertEquals(0, latency.getCount());
+        assertEquals(0, latency.getMax());
+    }
+
+    @Test
+    public void percentilesUseNearestRank() {
+        LatencyRecorder recorder = new LatencyRecorder(100);
+        // record 1..100ms in reverse so the recorder has to sort
+        for (int ms = 100; ms >= 1; ms--) {
+            recorder.record(ms * 1_000_000L);
+        }
+
+        LoadTestReport.Latency latency = recorder.summarize();
+        assertEquals(100, latency.getCount());
+        assertEquals(50.5, latency.getMean(), 1e-9);
+        assertEquals(50, latency.getP50());
+        assertEquals(90, latency.getP90());
+        assertEquals(99, latency.getP99());
+        assertEquals(100, latency.getP999());
+        assertEquals(100, latency.getMax());
+    }
+
+    @Test
+    public void samplesBeyondCapacityAreDropped() {
+        LatencyRecorder recorder = new LatencyRecorder(3);
+        recorder.record(1_000_000);
+        recorder.record(2_000_000);
+        recorder.record(3_000_000);
+        recorder.record(500_000_000);
+
+        LoadTestReport.Latency latency = recorder.summarize();
+        assertEquals(3, latency.getCount());
+        assertEquals(3, latency.getMax());
+    }
+
+    @Test
+    public void subMillisecondSamplesKeepPrecision() {
+        LatencyRecorder recorder = new LatencyRecorder(1);
+        recorder.record(250_000);
+        assertEquals(0.25, recorder.summarize().getP50(), 1e-9);
+    }
+}
@@ -0,0 +1,89 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.maintenance;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.time.ZoneOffset;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the hour of week traffic model.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class TrafficModelTest {
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long WEEK_MS = 7 * 24 * HOUR_MS;
+    private static final long MONDAY_MS = 4 * 24 * HOUR_MS; // 1970-01-05, a monday in UTC
+
+    @Test
+    public void hourIsLearnedWhenItEnds() {
+        TrafficModel model = new TrafficModel(ZoneOffset.UTC);
+        for (int i = 0; i < 10; i++) {
+            model.recordPour(MONDAY_MS + i * 1000);
+        }
+        assertEquals(0, model.getPourRate(MONDAY_MS), 1e-9);
+
+        model.roll(MONDAY_MS + HOUR_MS);
+        assertEquals(3, model.getPourRate(MONDAY_MS), 1e-9);
+    }
+
+    @Test
+    public void quietHoursDecayWithoutPours() {
+        TrafficModel model = new TrafficModel(ZoneOffset.UTC);
+        model.recordPour(MONDAY_MS);
+        model.roll(MONDAY_MS + HOUR_MS);
+        assertEquals(0.3, model.getPourRate(MONDAY_MS), 1e-9);
+
+        // A week later the same hour passes with no pours and no other calls
+        // than the scheduler rolling the clock
+        model.roll(MONDAY_MS + WEEK_MS + HOUR_MS);
+        assertEquals(0.21, model.getPourRate(MONDAY_MS), 1e-9);
+    }
+
+    @Test
+    public void expectedPoursSpanHours() {
+        TrafficModel model = new TrafficModel(ZoneOffset.UTC);
+        model.roll(MONDAY_MS);
+        for (int i = 0; i < 10; i++) {
+            model.recordPour(MONDAY_MS + i * 1000);
+        }
+        for (int i = 0; i < 20; i++) {
+            model.recordPour(MONDAY_MS + HOUR_MS + i * 1000);
+        }
+        model.roll(MONDAY_MS + 2 * HOUR_MS);
+
+        // Half of the first hour at 3 pours an hour and half of the second at 6
+        long start = MONDAY_MS + WEEK_MS + HOUR_MS / 2;
+        assertEquals(4.5, model.expectedPours(start, HOUR_MS), 1e-9);
+    }
+
+    @Test
+    public void modelSurvivesWriteAndRead() throws Exception {
+        TrafficModel model = new TrafficModel(ZoneOffset.UTC);
+        model.roll(MONDAY_MS);
+        for (int i = 0; i < 10; i++) {
+            model.recordPour(MONDAY_MS + i * 1000);
+        }
+        model.roll(MONDAY_MS + HOUR_MS);
+        model.recordPour(MONDAY_MS + HOUR_MS);
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        model.write(new DataOutputStream(bytes));
+        TrafficModel restored = new TrafficModel(ZoneOffset.UTC);
+        restored.read(new DataInputStream(new ByteArrayInputStream(bytes.toByteArray())));
+
+        // The learned hour and the pour counted in the current hour both survive
+        assertEquals(3, restored.getPourRate(MONDAY_MS), 1e-9);
+        restored.roll(MONDAY_MS + 2 * HOUR_MS);
+        assertEquals(0.3, restored.getPourRate(MONDAY_MS + HOUR_MS), 1e-9);
+    }
+}
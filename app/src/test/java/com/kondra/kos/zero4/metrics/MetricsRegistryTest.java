@@ -0,0 +1,78 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.metrics;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the OpenMetrics rendering of the metrics registry.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class MetricsRegistryTest {
+
+    @Test
+    public void countersAndGaugesRenderInOpenMetricsFormat() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        Counter pours = new Counter();
+        metrics.counter("zero4_pours", "Pours", pours);
+        metrics.gauge("zero4_pump_running", "Running", "pump=\"micro1\"", () -> 1);
+        metrics.gauge("zero4_pump_running", "Running", "pump=\"micro2\"", () -> 0.5);
+        pours.add(42);
+
+        assertEquals("# TYPE zero4_pours counter\n"
+                + "# HELP zero4_pours Pours\n"
+                + "zero4_pours_total 42\n"
+                + "# TYPE zero4_pump_running gauge\n"
+                + "# HELP zero4_pump_running Running\n"
+                + "zero4_pump_running{pump=\"micro1\"} 1\n"
+                + "zero4_pump_running{pump=\"micro2\"} 0.5\n"
+                + "# EOF\n", scrape(metrics));
+    }
+
+    @Test
+    public void specialValuesUseOpenMetricsNames() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.gauge("a", "a", null, () -> Double.NaN);
+        metrics.gauge("b", "b", null, () -> Double.POSITIVE_INFINITY);
+        metrics.gauge("c", "c", null, () -> -3);
+        metrics.counter("d", "d", null, () -> Long.MAX_VALUE);
+
+        String out = scrape(metrics);
+        assertEquals(true, out.contains("\na NaN\n"));
+        assertEquals(true, out.contains("\nb +Inf\n"));
+        assertEquals(true, out.contains("\nc -3\n"));
+        assertEquals(true, out.contains("\nd_total 9223372036854775807\n"));
+    }
+
+    @Test
+    public void scrapesReuseTheBufferWithoutLeftovers() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        for (int i = 0; i < 200; i++) {
+            metrics.gauge("zero4_gauge_" + i, "Gauge with a long help text to grow the buffer", null, () -> 1);
+        }
+        String first = scrape(metrics);
+        assertEquals(first, scrape(metrics));
+    }
+
+    @Test
+    public void registeringAFamilyWithAnotherTypeFails() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        metrics.counter("zero4_pours", "Pours");
+        assertThrows(IllegalArgumentException.class, () -> metrics.gauge("zero4_pours", "Pours", null, () -> 1));
+    }
+
+    private static String scrape(MetricsRegistry metrics) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        metrics.scrape(out);
+        return out.toString(StandardCharsets.UTF_8);
+    }
+}
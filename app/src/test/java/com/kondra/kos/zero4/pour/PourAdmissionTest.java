@@ -0,0 +1,147 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.pour;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+import com.kondra.kos.zero4.clock.VirtualClock;
+
+/**
+ * Tests for the pour admission queue of a nozzle.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class PourAdmissionTest {
+    private final VirtualClock clock = new VirtualClock(0);
+    private final PourAdmission admission = new PourAdmission(clock);
+
+    @Test
+    public void firstPourStartsImmediately() {
+        PourAdmission.Ticket ticket = admission.admit(null, "cola@50000");
+        assertTrue(ticket.isAdmitted());
+        assertNull(ticket.getReason());
+
+        List<String> started = new ArrayList<>();
+        admission.awaitTurn(ticket, () -> started.add("cola"));
+        assertEquals(List.of("cola"), started);
+        assertEquals(1, admission.getDepth());
+    }
+
+    @Test
+    public void queuedPoursStartInOrder() {
+        List<String> started = new ArrayList<>();
+        PourAdmission.Ticket a = admission.admit(null, "a@1");
+        PourAdmission.Ticket b = admission.admit(null, "b@1");
+        PourAdmission.Ticket c = admission.admit(null, "c@1");
+        admission.awaitTurn(a, () -> started.add("a"));
+        admission.awaitTurn(b, () -> started.add("b"));
+        admission.awaitTurn(c, () -> started.add("c"));
+        assertEquals(List.of("a"), started);
+
+        admission.release(a);
+        assertEquals(List.of("a", "b"), started);
+        admission.release(b);
+        assertEquals(List.of("a", "b", "c"), started);
+        admission.release(c);
+        assertEquals(0, admission.getDepth());
+    }
+
+    @Test
+    public void releasedWaiterNeverStarts() {
+        List<String> started = new ArrayList<>();
+        PourAdmission.Ticket a = admission.admit(null, "a@1");
+        PourAdmission.Ticket b = admission.admit(null, "b@1");
+        PourAdmission.Ticket c = admission.admit(null, "c@1");
+        admission.awaitTurn(b, () -> started.add("b"));
+        admission.awaitTurn(c, () -> started.add("c"));
+
+        admission.release(b);
+        admission.release(a);
+        assertEquals(List.of("c"), started);
+    }
+
+    @Test
+    public void retriedRequestIsRejected() {
+        assertTrue(admission.admit("req-1", PourAdmission.key("cola", 500)).isAdmitted());
+        clock.advance(2000 * 1_000_000L);
+
+        PourAdmission.Ticket dup = admission.admit("req-1", PourAdmission.key("cola", 500));
+        assertFalse(dup.isAdmitted());
+        assertEquals(PourAdmission.REASON_errDuplicate, dup.getReason());
+        assertEquals(0, dup.getRetryAfterMs());
+        assertEquals(1, admission.getShedDuplicate());
+    }
+
+    @Test
+    public void sameDrinkWithNewRequestIsAdmitted() {
+        assertTrue(admission.admit("req-1", PourAdmission.key("cola", 500)).isAdmitted());
+        assertTrue(admission.admit("req-2", PourAdmission.key("cola", 500)).isAdmitted());
+        assertEquals(0, admission.getShedDuplicate());
+    }
+
+    @Test
+    public void doublePressWithoutRequestIdIsDebounced() {
+        assertTrue(admission.admit(null, PourAdmission.key("cola", 500)).isAdmitted());
+
+        PourAdmission.Ticket dup = admission.admit(null, PourAdmission.key("cola", 500.0001));
+        assertFalse(dup.isAdmitted());
+        assertEquals(PourAdmission.REASON_errDuplicate, dup.getReason());
+        assertTrue(admission.admit(null, PourAdmission.key("cola", 250)).isAdmitted());
+
+        // Once the debounce window has passed the same drink is a new pour
+        clock.advance(1000 * 1_000_000L);
+        assertTrue(admission.admit(null, PourAdmission.key("cola", 500)).isAdmitted());
+        assertEquals(1, admission.getShedDuplicate());
+    }
+
+    @Test
+    public void fullQueueRejectsAsBusy() {
+        admission.setMaxWaiting(2);
+        PourAdmission.Ticket head = admission.admit(null, "a@1");
+        admission.setDuration(head, 3000);
+        admission.awaitTurn(head, () -> {});
+        admission.admit(null, "b@1");
+        assertEquals(0, admission.getStatus().getRetryAfterMs());
+        admission.admit(null, "c@1");
+
+        PourAdmission.Ticket busy = admission.admit(null, "d@1");
+        assertFalse(busy.isAdmitted());
+        assertEquals(PourAdmission.REASON_errBusy, busy.getReason());
+        assertEquals(3000, busy.getRetryAfterMs());
+        assertEquals(1, admission.getShedBusy());
+        assertEquals(3, admission.getStatus().getDepth());
+
+        clock.advance(1000 * 1_000_000L);
+        assertEquals(2000, admission.getStatus().getRetryAfterMs());
+
+        admission.release(head);
+        assertTrue(admission.admit(null, "d@1").isAdmitted());
+    }
+
+    @Test
+    public void headThatNeverCompletesExpires() {
+        List<String> started = new ArrayList<>();
+        PourAdmission.Ticket a = admission.admit(null, "a@1");
+        admission.setDuration(a, 1000);
+        admission.awaitTurn(a, () -> started.add("a"));
+        PourAdmission.Ticket b = admission.admit(null, "b@1");
+        admission.awaitTurn(b, () -> started.add("b"));
+
+        clock.advance(3000 * 1_000_000L);
+        assertEquals(List.of("a"), started);
+
+        clock.advance(3000 * 1_000_000L);
+        assertEquals(List.of("a", "b"), started);
+        assertEquals(1, admission.getDepth());
+    }
+}
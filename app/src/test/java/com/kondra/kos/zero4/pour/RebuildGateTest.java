@@ -0,0 +1,83 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.pour;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for coalescing graph rebuilds while ingredient batches are applied.
+ * A holder change is simulated the way kOS handles it, by running a rebuild
+ * through the gate, so the tests measure the full rebuilds each way of
+ * applying the startup assignments costs.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class RebuildGateTest {
+    private static final int ASSIGNMENTS = 6; // ingredients assigned at startup
+
+    private final RebuildGate gate = new RebuildGate();
+    private int fullRebuilds;
+
+    @Test
+    public void sequentialAssignmentsRebuildEachTime() {
+        for (int i = 0; i < ASSIGNMENTS; i++) {
+            holderChanged();
+        }
+        assertEquals(ASSIGNMENTS, fullRebuilds);
+        assertEquals(0, gate.getSuspended());
+    }
+
+    @Test
+    public void batchRebuildsOnceAtClose() {
+        gate.open();
+        for (int i = 0; i < ASSIGNMENTS; i++) {
+            holderChanged();
+        }
+        assertEquals(0, fullRebuilds);
+        assertTrue(gate.close());
+        fullRebuilds++;
+
+        assertEquals(1, fullRebuilds);
+        assertEquals(ASSIGNMENTS, gate.getSuspended());
+    }
+
+    @Test
+    public void batchWithoutChangesDoesNotRebuild() {
+        gate.open();
+        assertFalse(gate.close());
+    }
+
+    @Test
+    public void overlappingBatchesRebuildOnceAfterTheLast() {
+        gate.open();
+        holderChanged();
+        gate.open();
+        holderChanged();
+        assertFalse(gate.close());
+        holderChanged();
+        assertTrue(gate.close());
+        assertEquals(0, fullRebuilds);
+
+        // Rebuilds after the batches run in full again
+        holderChanged();
+        assertEquals(1, fullRebuilds);
+    }
+
+    @Test
+    public void closeWithoutOpenFails() {
+        assertThrows(IllegalStateException.class, gate::close);
+    }
+
+    private void holderChanged() {
+        if (!gate.suspend()) {
+            fullRebuilds++;
+        }
+    }
+}
@@ -0,0 +1,128 @@
+/**
+ * (C) Copyright 2025, TCCC, All rights reserved.
+ */
+package com.kondra.kos.zero4.trace;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * Tests for the pump event ring buffer.
+ *
+ * @author David Vogt
+ * @version 2026-10-18
+ */
+public class PumpEventRecorderTest {
+
+    @Test
+    public void eventsAreReturnedOldestFirst() {
+        PumpEventRecorder recorder = new PumpEventRecorder(8);
+        recorder.record(PumpEventRecorder.START, 1, 100);
+        recorder.record(PumpEventRecorder.CANCEL, 2, 200);
+        recorder.record(PumpEventRecorder.STOP, 3, 300);
+
+        List<PumpEvent> events = recorder.getEvents();
+        assertEquals(3, events.size());
+        assertEquals("start", events.get(0).getType());
+        assertEquals(1, events.get(0).getPos());
+        assertEquals(100, events.get(0).getArg());
+        assertEquals("cancel", events.get(1).getType());
+        assertEquals("stop", events.get(2).getType());
+        assertEquals(2, events.get(2).getSeq());
+    }
+
+    @Test
+    public void bufferKeepsMostRecentEvents() {
+        PumpEventRecorder recorder = new PumpEventRecorder(8);
+        for (int i = 0; i < 20; i++) {
+            recorder.record(PumpEventRecorder.START, i, i);
+        }
+
+        List<PumpEvent> events = recorder.getEvents();
+        assertEquals(8, events.size());
+        for (int i = 0; i < 8; i++) {
+            assertEquals(12 + i, events.get(i).getSeq());
+            assertEquals(12 + i, events.get(i).getArg());
+        }
+    }
+
+    @Test
+    public void capacityRoundsUpToPowerOfTwo() {
+        PumpEventRecorder recorder = new PumpEventRecorder(5);
+        for (int i = 0; i < 20; i++) {
+            recorder.record(PumpEventRecorder.START, 0, i);
+        }
+        assertEquals(8, recorder.getEvents().size());
+    }
+
+    @Test
+    public void negativePositionIsPreserved() {
+        PumpEventRecorder recorder = new PumpEventRecorder(4);
+        recorder.record(PumpEventRecorder.RESYNC, -1, 0x3f);
+
+        PumpEvent event = recorder.getEvents().get(0);
+        assertEquals("resync", event.getType());
+        assertEquals(-1, event.getPos());
+        assertEquals(0x3f, event.getArg());
+    }
+
+    @Test
+    public void sampledEventsRecordOneInN() {
+        PumpEventRecorder recorder = new PumpEventRecorder(16);
+        recorder.setSampleEvery(3);
+        for (int i = 0; i < 9; i++) {
+            recorder.sample(PumpEventRecorder.START, 0, i);
+        }
+
+        List<PumpEvent> events = recorder.getEvents();
+        assertEquals(3, events.size());
+        assertEquals(0, events.get(0).getArg());
+        assertEquals(3, events.get(1).getArg());
+        assertEquals(6, events.get(2).getArg());
+    }
+
+    @Test
+    public void concurrentReadsNeverSeeTornEvents() throws Exception {
+        // Every event is written with pos equal to arg, so a payload mixed from
+        // two different events shows up as a mismatch
+        PumpEventRecorder recorder = new PumpEventRecorder(16);
+        AtomicBoolean done = new AtomicBoolean();
+        List<Thread> writers = new ArrayList<>();
+        for (int w = 0; w < 4; w++) {
+            int offset = w * 1_000_000;
+            Thread writer = new Thread(() -> {
+                for (int i = 0; !done.get(); i = (i + 1) % 1_000_000) {
+                    recorder.record(PumpEventRecorder.START, offset + i, offset + i);
+                }
+            });
+            writer.start();
+            writers.add(writer);
+        }
+
+        boolean torn = false;
+        int read = 0;
+        try {
+            long deadline = System.currentTimeMillis() + 500;
+            while (System.currentTimeMillis() < deadline) {
+                for (PumpEvent e : recorder.getEvents()) {
+                    torn |= (e.getPos() != e.getArg());
+                    read++;
+                }
+            }
+        } finally {
+            done.set(true);
+            for (Thread writer : writers) {
+                writer.join();
+            }
+        }
+        assertTrue(read > 0);
+        assertFalse(torn);
+    }
+}
@@ -0,0 +1,78 @@
+#!/bin/bash
+#
+# Build optimized brandset assets for the KAB.
+#
+# Copies assets to the output directory, minifying svg icons and writing
+# precompressed copies of each next to it: gzip always, and brotli when the
+# brotli tool is installed. A manifest of content hashes is written to
+# manifest.json, which the app uses to serve the icons with strong etags.
+# If SPRITE=true, all icons are also bundled into a single sprite.svg of
+# <symbol> elements so the UI can load every icon at once.
+#
+# usage: build-assets.sh <srcDir> <outDir>
+#
+set -e -o pipefail -u
+
+SRC=$1
+OUT=$2
+SPRITE=${SPRITE:-false}
+
+rm -rf "$OUT"
+mkdir -p "$OUT"
+cp -r "$SRC"/. "$OUT"
+
+# minify svg: strip comments and xml prolog, collapse whitespace between tags
+minify() {
+    tr '\n\r\t' '   ' < "$1" \
+        | sed -e 's/<?xml[^>]*?>//g' -e 's/<!--\([^-]\|-[^-]\)*-->//g' \
+              -e 's/>[[:space:]]\+</></g' -e 's/[[:space:]]\{2,\}/ /g' \
+              -e 's/^[[:space:]]*//' -e 's/[[:space:]]*$//'
+}
+
+while IFS= read -r svg; do
+    minify "$svg" > "$svg.min"
+    mv "$svg.min" "$svg"
+done < <(find "$OUT" -name '*.svg' | sort)
+
+# bundle the minified icons before hashing so the sprite is in the manifest too
+if [ "$SPRITE" = "true" ]; then
+    sprite="$OUT/icons/sprite.svg"
+    icons=$(find "$OUT/icons" -name '*.svg' | sort)
+    {
+        printf '<svg xmlns="http://www.w3.org/2000/svg" style="display:none">'
+        for svg in $icons; do
+            name=$(basename "$svg" .svg)
+            viewBox=$(grep -o 'viewBox="[^"]*"' "$svg" | head -1)
+            sed -e "s|^<svg[^>]*>|<symbol id=\"$name\" $viewBox>|" -e 's|</svg>$|</symbol>|' "$svg"
+        done
+        printf '</svg>'
+    } > "$sprite"
+fi
+
+manifest="$OUT/manifest.json"
+echo "{" > "$manifest"
+first=true
+
+while IFS= read -r svg; do
+    rel=${svg#"$OUT"/}
+
+    # -n omits the timestamp so the gzip bytes are reproducible
+    gzip -9 -n -c "$svg" > "$svg.gz"
+    brSize=0
+    if command -v brotli > /dev/null; then
+        brotli -q 11 -c "$svg" > "$svg.br"
+        brSize=$(stat -c %s "$svg.br")
+    fi
+
+    hash=$(sha256sum "$svg" | cut -c1-16)
+    size=$(stat -c %s "$svg")
+    gzSize=$(stat -c %s "$svg.gz")
+
+    $first || echo "," >> "$manifest"
+    first=false
+    printf '  "%s": {"hash": "%s", "size": %d, "gzSize": %d, "brSize": %d}' \
+        "$rel" "$hash" "$size" "$gzSize" "$brSize" >> "$manifest"
+done < <(find "$OUT" -name '*.svg' | sort)
+
+echo "" >> "$manifest"
+echo "}" >> "$manifest"